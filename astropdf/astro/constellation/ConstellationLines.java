@@ -3,6 +3,7 @@ package astropdf.astro.constellation;
 import static astropdf.util.LogUtil.log;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,19 +45,16 @@ public class ConstellationLines {
   */
   public List<Star> scanForAnyMissingStarsInThe(List<Star> givenStarList, StarCatalog starCatalog){
     List<Star> result = new ArrayList<>();
+    Set<Integer> given = new HashSet<>();
+    for(Star star : givenStarList) {
+      given.add(star.INDEX);
+    }
     Set<String> constellations = lines.keySet();
     for (String constellation : constellations) {
       List<List<Integer>> polys = lines.get(constellation);
       for (List<Integer> poly : polys) {
         for (Integer id : poly) {
-          boolean missing = true;
-          for(Star star : givenStarList) {
-            if (star.INDEX.equals(id)) {
-              missing = false;
-              break;
-            }
-          }
-          if (missing) {
+          if (!given.contains(id)) {
             result.add(lookUpStar(id, starCatalog));
           }
         }
@@ -117,13 +115,6 @@ public class ConstellationLines {
   
   /** Returns null if not found. */
   private Star lookUpStar(Integer id, StarCatalog catalog) {
-    Star result = null;
-    for (Star star : catalog.all()) {
-      if (star.INDEX.equals(id)) {
-        result = star;
-        break;
-      }
-    }
-    return result;
+    return catalog.findByIndex(id).orElse(null);
   }
 }
\ No newline at end of file
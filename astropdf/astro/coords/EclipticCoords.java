@@ -26,9 +26,13 @@ public final class EclipticCoords {
   public EclipticCoords() { }
   
   public Position toRaDec(double jd) {
-    Position result = new Position();
     LongTermPrecession precession = new LongTermPrecession();
-    double ε = precession.obliquity(jd);
+    return toRaDecWithObliquity(precession.obliquity(jd));
+  }
+  
+  /** As in {@link #toRaDec(double)}, but with an obliquity (radians) that the caller has already computed. */
+  public Position toRaDecWithObliquity(double ε) {
+    Position result = new Position();
     result.δ = asin(sin(β)*cos(ε) + cos(β)*sin(ε)*sin(λ)); //rads, -pi/2..pi/2
     double numer = sin(λ)*cos(ε) - tan(β)*sin(ε);
     double denom = cos(λ);
@@ -0,0 +1,35 @@
+package astropdf.astro.ephemeris;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import astropdf.astro.time.GregorianCal;
+import astropdf.util.LogUtil;
+
+/**
+ Compute a {@link ChebyshevEphemeris} for a range of years, and save it to a binary file.
+ This is meant to be run offline, once. Later runs can then call {@link ChebyshevEphemeris#map(Path)}, 
+ which is nearly instantaneous.
+ 
+ <P>Arguments: first year, last year (inclusive), file name.
+ For example: <code>1900 2100 ephemeris-1900-2100.bin</code>.
+ About 35 KB are needed per year.
+*/
+public final class BuildEphemerisFile {
+
+  public static void main(String... args) throws Exception {
+    if (args.length != 3) {
+      throw new IllegalArgumentException("Expecting 3 arguments: first year, last year, file name.");
+    }
+    int firstYear = Integer.valueOf(args[0]);
+    int lastYear = Integer.valueOf(args[1]);
+    Path path = Paths.get(args[2]);
+    double start = GregorianCal.jdForGreenwich(firstYear, 1, 1.0) - PADDING_DAYS;
+    double end = GregorianCal.jdForGreenwich(lastYear + 1, 1, 1.0) + PADDING_DAYS;
+    ChebyshevEphemeris ephem = new ChebyshevEphemeris(start, end);
+    ephem.save(path);
+    LogUtil.log("Saved ephemeris for " + firstYear + ".." + lastYear + " to " + path.toAbsolutePath());
+  }
+  
+  private static final double PADDING_DAYS = 4.0;
+}
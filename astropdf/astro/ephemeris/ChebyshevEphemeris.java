@@ -0,0 +1,222 @@
+package astropdf.astro.ephemeris;
+
+import static java.lang.Math.asin;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import astropdf.astro.coords.EclipticCoords;
+import astropdf.astro.coords.LBR;
+import astropdf.astro.coords.Position;
+import astropdf.astro.moon.LunarPosition;
+import astropdf.astro.planets.Planet;
+import astropdf.astro.planets.PlanetPosition;
+import astropdf.astro.planets.SolarPosition;
+import astropdf.astro.precession.LongTermPrecession;
+import astropdf.astro.time.AstroUtil;
+import astropdf.astro.time.GregorianCal;
+import astropdf.config.Config;
+import astropdf.math.ChebyshevTable;
+import astropdf.math.ChebyshevTableFile;
+import astropdf.math.Maths;
+import astropdf.util.LogUtil;
+
+/**
+ Positions of the Sun, Moon, and planets, from Chebyshev polynomials fitted over a span of time.
+ 
+ <P>The fits are made once, from the full theories: {@link PlanetPosition#lbr(double)}, {@link SolarPosition#apparentλ(double)}, 
+ and {@link LunarPosition#λβ(double)}. After that, each coordinate is found with a handful of multiply-adds.
+ This is useful when the same bodies are queried many times, as in the search for rise and set times.
+ 
+ <P>The span is divided into segments of fixed length: {@value #DAYS_MOON} days for the Moon, and 
+ {@value #DAYS_OTHERS} days for the Sun and the planets. The error of the fit is far below the error of the 
+ underlying theories.
+ 
+ <P>The fitted data can be saved to a binary file, and later memory-mapped by other runs; see {@link BuildEphemerisFile}.
+ 
+ <P>The methods of this class can be passed as a <code>Function&lt;Double, Position&gt;</code>, 
+ in the same way as the methods of the underlying classes.
+ Times outside of the fitted span cause an exception.
+*/
+public final class ChebyshevEphemeris {
+
+  /** Length of each segment for the Moon - {@value} days. */
+  public static final double DAYS_MOON = 8.0;
+  
+  /** Length of each segment for the Sun and planets - {@value} days. */
+  public static final double DAYS_OTHERS = 32.0;
+  
+  /** Fit all bodies over the given span of time. */
+  public ChebyshevEphemeris(double jdStart, double jdEnd) {
+    LogUtil.log("Fitting Chebyshev ephemeris for jd " + jdStart + ".." + jdEnd);
+    for(Planet planet : Planet.values()) {
+      PlanetPosition position = new PlanetPosition(planet);
+      planets.put(planet, ChebyshevTable.fit(jde -> lbr(position, jde), LBR_ANGLES, jdStart, jdEnd, DAYS_OTHERS, DEGREE_OTHERS));
+    }
+    SolarPosition sun = new SolarPosition();
+    LongTermPrecession precession = new LongTermPrecession();
+    this.sun = ChebyshevTable.fit(jde -> new double[] {sun.apparentλ(jde), precession.obliquity(jde)}, SUN_ANGLES, jdStart, jdEnd, DAYS_OTHERS, DEGREE_OTHERS);
+    LunarPosition moon = new LunarPosition();
+    this.moon = ChebyshevTable.fit(jde -> λβ(moon, jde), MOON_ANGLES, jdStart, jdEnd, DAYS_MOON, DEGREE_MOON);
+  }
+  
+  /**
+   Map a file previously created by {@link #save(Path)}. 
+   The coefficients are read directly from the mapped file, and are not copied onto the heap.
+  */
+  public static ChebyshevEphemeris map(Path path) throws IOException {
+    LogUtil.log("Mapping Chebyshev ephemeris file: " + path);
+    return new ChebyshevEphemeris(ChebyshevTableFile.map(path));
+  }
+  
+  /** Save the fitted data to a binary file, which can later be passed to {@link #map(Path)}. */
+  public void save(Path path) throws IOException {
+    Map<String, ChebyshevTable> tables = new LinkedHashMap<>();
+    for(Planet planet : planets.keySet()) {
+      tables.put(planet.name(), planets.get(planet));
+    }
+    tables.put(SUN, sun);
+    tables.put(MOON, moon);
+    ChebyshevTableFile.save(tables, path);
+  }
+  
+  /** The span of time covered by all bodies. */
+  public double jdStart() {
+    return moon.start();
+  }
+  
+  /** The span of time covered by all bodies. */
+  public double jdEnd() {
+    return Math.min(moon.end(), sun.end());
+  }
+  
+  /** 
+   Fit all bodies over the configured year. 
+   The span is padded by a few days at each end, for searches that start on Jan 1 or end on Dec 31. 
+  */
+  public static ChebyshevEphemeris forYear(Config config) {
+    double start = GregorianCal.jdForGreenwich(config.year(), 1, 1.0) - PADDING_DAYS;
+    double end = GregorianCal.jdForGreenwich(config.year() + 1, 1, 1.0) + PADDING_DAYS;
+    return new ChebyshevEphemeris(start, end);
+  }
+  
+  /** As in {@link PlanetPosition#lbr(double)}. The Earth is included. */
+  public LBR lbr(Planet planet, double jde) {
+    ChebyshevTable table = planets.get(planet);
+    LBR result = new LBR();
+    result.L = Maths.in2pi(table.value(0, jde));
+    result.B = table.value(1, jde);
+    result.R = table.value(2, jde);
+    return result;
+  }
+  
+  /** As in {@link PlanetPosition#position(double)}. The Earth is not permitted. */
+  public Position planetPosition(Planet planet, double jde) {
+    if (planet == Planet.Earth) {
+      throw new IllegalArgumentException("Can't pass planet Earth for this method.");
+    }
+    EclipticCoords ecl = PlanetPosition.geocentric(lbr(planet, jde), lbr(Planet.Earth, jde));
+    return ecl.toRaDecWithObliquity(obliquity(jde));
+  }
+  
+  /** As in {@link SolarPosition#apparentλ(double)}. Radians. */
+  public double sunApparentλ(double jde) {
+    return Maths.in2pi(sun.value(0, jde));
+  }
+  
+  /** As in {@link SolarPosition#apparentPosition(double)}. */
+  public Position sunPosition(double jde) {
+    double ε = obliquity(jde);
+    double λ = sunApparentλ(jde);
+    Position pos = new Position();
+    pos.α = Maths.atan3(sin(λ) * cos(ε), cos(λ));
+    pos.δ = asin(sin(ε) * sin(λ));
+    return pos;
+  }
+
+  /** As in {@link LunarPosition#λβ(double)}. */
+  public EclipticCoords moonλβ(double jde) {
+    return new EclipticCoords(Maths.in2pi(moon.value(0, jde)), moon.value(1, jde));
+  }
+  
+  /** As in {@link LunarPosition#position(double)}. */
+  public Position moonPosition(double jde) {
+    return moonλβ(jde).toRaDecWithObliquity(obliquity(jde));
+  }
+  
+  /** As in {@link LongTermPrecession#obliquity(double)}. Radians. */
+  public double obliquity(double jde) {
+    return sun.value(1, jde);
+  }
+  
+  // PRIVATE
+  
+  private static final int DEGREE_MOON = 13;
+  private static final int DEGREE_OTHERS = 12;
+  private static final double PADDING_DAYS = 4.0;
+  private static final boolean[] LBR_ANGLES = {true, false, false};
+  private static final boolean[] SUN_ANGLES = {true, false};
+  private static final boolean[] MOON_ANGLES = {true, false};
+  
+  private Map<Planet, ChebyshevTable> planets = new EnumMap<>(Planet.class);
+  private ChebyshevTable sun;
+  private ChebyshevTable moon;
+  private static final String SUN = "Sun";
+  private static final String MOON = "Moon";
+  
+  private ChebyshevEphemeris(Map<String, ChebyshevTable> tables) {
+    for(Planet planet : Planet.values()) {
+      planets.put(planet, tableFrom(tables, planet.name()));
+    }
+    this.sun = tableFrom(tables, SUN);
+    this.moon = tableFrom(tables, MOON);
+  }
+  
+  private static ChebyshevTable tableFrom(Map<String, ChebyshevTable> tables, String name) {
+    ChebyshevTable result = tables.get(name);
+    if (result == null) {
+      throw new IllegalArgumentException("Ephemeris file has no data for " + name);
+    }
+    return result;
+  }
+  
+  private static double[] lbr(PlanetPosition position, double jde) {
+    LBR lbr = position.lbr(jde);
+    return new double[] {lbr.L, lbr.B, lbr.R};
+  }
+  
+  private static double[] λβ(LunarPosition moon, double jde) {
+    EclipticCoords coords = moon.λβ(jde);
+    return new double[] {coords.λ, coords.β};
+  }
+  
+  /** Informal test harness. Compare with the direct calculation. */
+  public static void main(String... args) {
+    double start = GregorianCal.jdForGreenwich(2025, 1, 1.0);
+    double end = GregorianCal.jdForGreenwich(2026, 1, 1.0);
+    ChebyshevEphemeris ephem = new ChebyshevEphemeris(start, end);
+    SolarPosition sun = new SolarPosition();
+    LunarPosition moon = new LunarPosition();
+    PlanetPosition mercury = new PlanetPosition(Planet.Mercury);
+    double maxSun = 0.0;
+    double maxMoon = 0.0;
+    double maxMercury = 0.0;
+    for(double jd = start; jd < end; jd = jd + 0.37) {
+      maxSun = Math.max(maxSun, separation(sun.apparentPosition(jd), ephem.sunPosition(jd)));
+      maxMoon = Math.max(maxMoon, separation(moon.position(jd), ephem.moonPosition(jd)));
+      maxMercury = Math.max(maxMercury, separation(mercury.position(jd), ephem.planetPosition(Planet.Mercury, jd)));
+    }
+    LogUtil.log("Max difference Sun: " + Maths.radsToArcsecs(maxSun) + " arcsec");
+    LogUtil.log("Max difference Moon: " + Maths.radsToArcsecs(maxMoon) + " arcsec");
+    LogUtil.log("Max difference Mercury: " + Maths.radsToArcsecs(maxMercury) + " arcsec");
+  }
+  
+  private static double separation(Position a, Position b) {
+    return AstroUtil.angularSeparation(a, b);
+  }
+}
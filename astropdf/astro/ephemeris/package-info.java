@@ -0,0 +1,2 @@
+/** Precomputed ephemerides for the Sun, Moon, and planets. */
+package astropdf.astro.ephemeris;
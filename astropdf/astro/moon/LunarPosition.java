@@ -2,12 +2,12 @@ package astropdf.astro.moon;
 
 import static astropdf.math.Maths.degToRads;
 import static astropdf.math.Maths.in360;
+import static java.lang.Math.asin;
 import static java.lang.Math.sin;
 
-import java.util.List;
-
 import astropdf.astro.coords.EclipticCoords;
 import astropdf.astro.coords.Position;
+import astropdf.astro.planets.EpochContext;
 import astropdf.astro.time.AstroUtil;
 import astropdf.astro.time.GregorianCal;
 import astropdf.math.Maths;
@@ -24,6 +24,10 @@ import astropdf.util.LogUtil;
  but I don't understand the paper. 
  It's also available in <a href='https://ui.adsabs.harvard.edu/abs/1991ltpf.book.....C/abstract'>book form</a>, 
  but I can't find or view the book anywhere. 
+ 
+ <P>The periodic terms are evaluated by a {@link LunarSeries}, which uses tables of multiple angles
+ instead of calling <code>sin</code> for each term. 
+ Each object has its own tables, so this class is not thread-safe: use one object per thread.
 */
 public final class LunarPosition {
 
@@ -31,40 +35,103 @@ public final class LunarPosition {
   public EclipticCoords λβ(double jde) {
     //remember: the amplitudes are in degrees, and the rest are in rads
     double T = AstroUtil.julianCenturiesSinceJ2000(jde);
-    Angles a = angles(T); //rads
-    double λ = contributionsFrom(LunarPositionDataLoader.periodicTermsλ(), a, T); //degrees
-    λ = λ + 3958 * sin(a.A1) + 1962*sin(a.Lp - a.F) + 318 * sin(a.A2); //degrees
-    λ = a.Lp + degToRads(λ/1_000_000.0); //rads
-    
-    double β = contributionsFrom(LunarPositionDataLoader.periodicTermsβ(), a, T); //degrees
-    β = β - 2235*sin(a.Lp) + 382*sin(a.A3) + 175*sin(a.A1 - a.F) + 175*sin(a.A1 + a.F) + 127*sin(a.Lp - a.Mp) - 115*sin(a.Lp + a.Mp); //degrees
-    β = degToRads(β/1_000_000.0); //rads
-    
-    EclipticCoords result = new EclipticCoords(λ, β);
+    evaluator.evaluate(T);
+    return λβ(evaluator.angles, evaluator.sumλ, evaluator.sumβ);
+  }
+  
+  /** The result of {@link #λβΔ(double)}. */
+  public static final class Data {
+    /** With respect to the mean equinox of date. */
+    public EclipticCoords λβ;
+    /** The distance between the centres of the Earth and the Moon, in kilometres. */
+    public double Δ;
+    /** The equatorial horizontal parallax, in radians. */
+    public double parallax;
+  }
+  
+  /** As in {@link #λβ(double)}, but with the distance and horizontal parallax of the Moon as well. Computed in the same pass. */
+  public Data λβΔ(double jde) {
+    double T = AstroUtil.julianCenturiesSinceJ2000(jde);
+    evaluator.evaluate(T);
+    Data result = new Data();
+    result.λβ = λβ(evaluator.angles, evaluator.sumλ, evaluator.sumβ);
+    result.Δ = MEAN_DISTANCE + evaluator.sumΔ / 1000.0; //km
+    result.parallax = horizontalParallax(result.Δ);
     return result;
   }
   
+  /** The distance between the centres of the Earth and the Moon, in kilometres. */
+  public double distance(double jde) {
+    return λβΔ(jde).Δ;
+  }
+  
+  /** The equatorial horizontal parallax, in radians, for the given distance of the Moon in kilometres. */
+  public static double horizontalParallax(double Δ) {
+    return asin(EQUATORIAL_RADIUS / Δ);
+  }
+  
+  /** The geocentric semi-diameter of the Moon, in radians, from its horizontal parallax. Ref: Meeus 1991, page 359. */
+  public static double semidiameter(double parallax) {
+    return asin(RADIUS_RATIO * sin(parallax));
+  }
+
   /** The position of the Moon with respect to the mean equator and equinox of date, in spherical equatorial coords. */
   public Position position(double jde) {
     return λβ(jde).toRaDec(jde);
   }
   
-  /** Radians, in range 0..2pi. */
-  private Angles angles(double T) {
-    Angles result = new Angles();
+  /** As in {@link #position(double)}, but using the obliquity already computed for the given time. */
+  public Position position(EpochContext context) {
+    return λβ(context.jde()).toRaDecWithObliquity(context.obliquity());
+  }
+  
+  /**
+   Return the Moon's λ and β at evenly spaced times, starting at the given time.
+   This is the fastest way to build a table of positions.
+   @param step in days; may be negative.
+  */
+  public LunarStepper stepper(double jdeStart, double step) {
+    return new LunarStepper(series, jdeStart, step);
+  }
+  
+  /** 
+   Finish the calculation of λ and β, from the sums of the periodic terms.
+   @param sumλ sum of the periodic terms for λ, in millionths of a degree.
+   @param sumβ sum of the periodic terms for β, in millionths of a degree. 
+  */
+  static EclipticCoords λβ(Angles a, double sumλ, double sumβ) {
+    double λ = sumλ + 3958 * sin(a.A1) + 1962*sin(a.Lp - a.F) + 318 * sin(a.A2); //degrees
+    λ = a.Lp + degToRads(λ/1_000_000.0); //rads
+    
+    double β = sumβ - 2235*sin(a.Lp) + 382*sin(a.A3) + 175*sin(a.A1 - a.F) + 175*sin(a.A1 + a.F) + 127*sin(a.Lp - a.Mp) - 115*sin(a.Lp + a.Mp); //degrees
+    β = degToRads(β/1_000_000.0); //rads
+    
+    EclipticCoords result = new EclipticCoords(λ, β);
+    return result;
+  }
+  
+  /** Fill in the given object, with radians in range 0..2pi. No new objects are created. */
+  static void angles(double T, Angles result) {
     result.Lp = degToRads(in360(218.316_4591 + 481_267.881_34236 * T - 0.001_3268 *T*T + T*T*T/538_841.0   - T*T*T*T/65_194_000.0)); 
-    result.D =  degToRads(in360(297.850_2042 + 445_267.111_5168  * T - 0.001_6300 *T*T + T*T*T/545_868.0   - T*T*T*T/113_065_000.0));
-    result.M =  degToRads(in360(357.529_1092 +  35_999.050_2909  * T - 0.000_1536 *T*T + T*T*T/24_490_000.0                     ));
-    result.Mp = degToRads(in360(134.963_4114 + 477_198.867_6313  * T + 0.008_9970 *T*T + T*T*T/69_699.0    - T*T*T*T/14_712_000.0));
-    result.F =  degToRads(in360( 93.272_0993 + 483_202.017_5273  * T - 0.003_4029 *T*T - T*T*T/3_526_000.0 + T*T*T*T/863_310_000.0));
+    result.D =  degToRads(in360(D(T)));
+    result.M =  degToRads(in360(M(T)));
+    result.Mp = degToRads(in360(Mp(T)));
+    result.F =  degToRads(in360(F(T)));
     
     result.A1 = degToRads(in360(119.75 +     131.849 * T));
     result.A2 = degToRads(in360(53.09  + 479_264.290 * T));
     result.A3 = degToRads(in360(313.45 + 481_266.484 * T));
-    return result;
   }
   
-  private static final class Angles {
+  /** Fill in the arguments D, M, M', and F of the periodic terms, in degrees. NOT placed in the range 0..360. */
+  static void arguments(double T, double[] result) {
+    result[0] = D(T);
+    result[1] = M(T);
+    result[2] = Mp(T);
+    result[3] = F(T);
+  }
+  
+  static final class Angles {
     double D;
     double M;
     double Mp;
@@ -75,13 +142,34 @@ public final class LunarPosition {
     double A3;
   }
   
-  /** Returns degrees. */
-  private double contributionsFrom(List<PeriodicTerm> periodicTerms, Angles angle, double T) {
-    double result = 0.0;
-    for(PeriodicTerm pt : periodicTerms) {
-      result = result + pt.contribution(angle.D, angle.M, angle.Mp, angle.F, T);
-    }
-    return result;
+  /** Kilometres. The constant term in the series for the distance. */
+  private static final double MEAN_DISTANCE = 385_000.56;
+  /** Equatorial radius of the Earth, in kilometres, as used by Meeus. */
+  private static final double EQUATORIAL_RADIUS = 6_378.14;
+  /** The Moon's radius divided by the Earth's equatorial radius. */
+  private static final double RADIUS_RATIO = 0.272_481;
+  
+  private final LunarSeries series = LunarSeries.instance();
+  private final LunarSeries.Evaluator evaluator = series.new Evaluator();
+  
+  /** Degrees, not placed in the range 0..360. */
+  private static double D(double T) {
+    return 297.850_2042 + 445_267.111_5168  * T - 0.001_6300 *T*T + T*T*T/545_868.0   - T*T*T*T/113_065_000.0;
+  }
+  
+  /** Degrees, not placed in the range 0..360. */
+  private static double M(double T) {
+    return 357.529_1092 +  35_999.050_2909  * T - 0.000_1536 *T*T + T*T*T/24_490_000.0;
+  }
+  
+  /** Degrees, not placed in the range 0..360. */
+  private static double Mp(double T) {
+    return 134.963_4114 + 477_198.867_6313  * T + 0.008_9970 *T*T + T*T*T/69_699.0    - T*T*T*T/14_712_000.0;
+  }
+  
+  /** Degrees, not placed in the range 0..360. */
+  private static double F(double T) {
+    return 93.272_0993 + 483_202.017_5273  * T - 0.003_4029 *T*T - T*T*T/3_526_000.0 + T*T*T*T/863_310_000.0;
   }
   
   public static void main(String[] args) {
@@ -89,5 +177,20 @@ public final class LunarPosition {
     double jd = GregorianCal.jdForGreenwich(1992, 04, 12.0);
     EclipticCoords coords = moon.λβ(jd);
     LogUtil.log("λ:" + Maths.radsToDegs(coords.λ) + " β:"+ Maths.radsToDegs(coords.β) + " jd:" + jd);
+    //Meeus 1991, page 313: Δ 368409.7 km, π 0.991990 degrees
+    Data data = moon.λβΔ(jd);
+    LogUtil.log("Δ:" + data.Δ + " km, parallax:" + Maths.radsToDegs(data.parallax) + " semi-diameter:" + Maths.radsToDegs(semidiameter(data.parallax)));
+    
+    //hourly for a year: the stepper versus the direct calculation
+    LunarStepper stepper = moon.stepper(jd, 1/24.0);
+    double maxDiff = 0.0;
+    for(int i = 0; i < 24*365; ++i) {
+      double jde = stepper.jde();
+      EclipticCoords stepped = stepper.next();
+      EclipticCoords direct = moon.λβ(jde);
+      maxDiff = Math.max(maxDiff, Math.abs(Maths.in2pi(stepped.λ - direct.λ + Math.PI) - Math.PI));
+      maxDiff = Math.max(maxDiff, Math.abs(stepped.β - direct.β));
+    }
+    LogUtil.log("Stepper, max difference from the direct calculation: " + Maths.radsToDegs(maxDiff) * 3600 + " arcsec");
   }
 }
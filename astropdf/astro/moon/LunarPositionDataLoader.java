@@ -1,77 +1,116 @@
 package astropdf.astro.moon;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.regex.Pattern;
 
+import astropdf.util.CoefficientBundle;
 import astropdf.util.DataFileReader;
 import astropdf.util.LogUtil;
 
 /** 
- Load ELP2000-82 data for the Moon, from a file in the native directory.
+ Load ELP2000-82 data for the Moon.
+ The data is read from the {@link CoefficientBundle}, if it exists; otherwise, the text data files in the native directory are parsed.
  This data is used to calculate the geocentric position of the Moon. 
 */
-final class LunarPositionDataLoader {
+public final class LunarPositionDataLoader {
 
-  /** Return a data structure to the caller containing all periodic terms for the Moon's λ. */
-  static List<PeriodicTerm> periodicTermsλ() {
+  /** 
+   Return all periodic terms for the Moon's λ and distance r, row after row, in the same layout as the {@link CoefficientBundle}.
+   Each row has {@value #NUM_COLUMNS_λ} items: the multiples of D, M, M', and F, then the amplitude for λ 
+   in millionths of a degree, and the amplitude for r in metres. 
+  */
+  static double[] periodicTermsλ() {
     return PERIODIC_TERMS_λ;
   }
 
-  /** Return a data structure to the caller containing all periodic terms for the Moon's β. */
-  static List<PeriodicTerm> periodicTermsβ() {
+  /** As in {@link #periodicTermsλ()}, but for β. Each row has {@value #NUM_COLUMNS_β} items, since there's no distance. */
+  static double[] periodicTermsβ() {
     return PERIODIC_TERMS_β;
   }
   
+  static final int NUM_COLUMNS_λ = 6;
+  static final int NUM_COLUMNS_β = 5;
+  
+  /**
+   The data for the Moon, parsed from the text data files, as sections of a {@link CoefficientBundle}.
+   Each row has the same columns as the corresponding text file.
+  */
+  public static Map<String, double[][]> bundleSections() {
+    Map<String, double[][]> result = new LinkedHashMap<>();
+    for(String fileName : List.of(FILE_NAME_λ, FILE_NAME_β)) {
+      result.put(sectionName(fileName), rowsFrom(fileName).toArray(new double[0][]));
+    }
+    return result;
+  }
+  
   // PRIVATE 
   
-  private static List<PeriodicTerm> PERIODIC_TERMS_λ;
-  private static List<PeriodicTerm> PERIODIC_TERMS_β;
+  private static double[] PERIODIC_TERMS_λ;
+  private static double[] PERIODIC_TERMS_β;
   private static final String FILE_NAME_λ = "elp-2000-82-long-r.utf8";
   private static final String FILE_NAME_β = "elp-2000-82-lat.utf8";
+  private static final String EXTENSION = ".utf8";
+  
+  /** Use the coefficient bundle if it exists, and parse the text file only as a fallback. */
+  private static double[] readPeriodicTermData(String fileName, int numColumns) {
+    Optional<CoefficientBundle> bundle = CoefficientBundle.instance();
+    String name = sectionName(fileName);
+    if (bundle.isPresent() && bundle.get().has(name)) {
+      if (bundle.get().columns(name) != numColumns) {
+        throw new RuntimeException("Expecting " + numColumns + " columns in the coefficient bundle for " + name);
+      }
+      return bundle.get().values(name); //no parsing is needed
+    }
+    List<double[]> rows = rowsFrom(fileName);
+    for(double[] row : rows) {
+      if (row.length != numColumns) {
+        throw new RuntimeException("Expecting " + numColumns + " columns in " + fileName);
+      }
+    }
+    return CoefficientBundle.flatten(rows);
+  }
   
-  private static List<PeriodicTerm> readPeriodicTermData(String fileName) {
-    List<PeriodicTerm> result = new ArrayList<PeriodicTerm>();
+  /** The text file, with each row as an array of numbers. */
+  private static List<double[]> rowsFrom(String fileName) {
+    List<double[]> result = new ArrayList<>();
     DataFileReader reader = new DataFileReader();
     List<String> lines = reader.readFileUTF8(LunarPositionDataLoader.class, fileName);
     for(String line : lines) {
       if (!line.isBlank()) {
-        result.add(periodicTermFor(line));
+        result.add(rowFor(line));
       }
     }
     return result;
   }
   
   /*  0,0,1,0,6288774,-20905355     */
-  private static PeriodicTerm periodicTermFor(String line) {
-    PeriodicTerm result = new PeriodicTerm();
+  private static double[] rowFor(String line) {
     String[] parts = line.split(Pattern.quote(","));
-    result.D = intFrom(parts, 0); 
-    result.M = intFrom(parts, 1); 
-    result.Mp = intFrom(parts, 2); 
-    result.F = intFrom(parts, 3); 
-    result.amplitude = dblFrom(parts,4);
-    //part 5 is ignored here: the distance 'r' is not implemented
+    double[] result = new double[parts.length];
+    for(int idx = 0; idx < parts.length; ++idx) {
+      result[idx] = Double.valueOf(parts[idx].trim());
+    }
     return result;
   }
   
-  private static Integer intFrom(String[] parts, int idx) {
-    return Integer.valueOf(parts[idx].trim()); 
-  }
-  
-  private static Double dblFrom(String[] parts, int idx) {
-    return Double.valueOf(parts[idx].trim()); 
+  /** For example, 'elp-2000-82-lat'. */
+  private static String sectionName(String fileName) {
+    return fileName.substring(0, fileName.length() - EXTENSION.length());
   }
   
   private static void countTheTerms() {
-    LogUtil.log("Number of terms in λ:  " + PERIODIC_TERMS_λ.size() + ", and β:" + PERIODIC_TERMS_β.size());
+    LogUtil.log("Number of terms in λ:  " + PERIODIC_TERMS_λ.length / NUM_COLUMNS_λ + ", and β:" + PERIODIC_TERMS_β.length / NUM_COLUMNS_β);
   }
 
   /** Executed once automatically when this class loads. */
   static {
-    LogUtil.log("Populating ELP 2000-82 data for the Moon's periodic terms (without distance r).");
-    PERIODIC_TERMS_λ = readPeriodicTermData(FILE_NAME_λ);
-    PERIODIC_TERMS_β = readPeriodicTermData(FILE_NAME_β);
+    LogUtil.log("Populating ELP 2000-82 data for the Moon's periodic terms (including distance r).");
+    PERIODIC_TERMS_λ = readPeriodicTermData(FILE_NAME_λ, NUM_COLUMNS_λ);
+    PERIODIC_TERMS_β = readPeriodicTermData(FILE_NAME_β, NUM_COLUMNS_β);
     countTheTerms();
   }
 }
\ No newline at end of file
@@ -0,0 +1,336 @@
+package astropdf.astro.moon;
+
+import astropdf.astro.time.AstroUtil;
+import astropdf.math.Maths;
+import astropdf.math.MultipleAngles;
+
+/**
+ The periodic terms of ELP 2000-82 for the Moon, compiled into primitive arrays.
+
+ <P>The argument of each term is a sum of small multiples of D, M, M', and F.
+ For each time, the sines and cosines of those multiples are computed once, and placed in tables
+ (see {@link MultipleAngles}). The sine of each term's argument is then built from table lookups,
+ using the formulas for sin(a + b) and cos(a + b), with no further calls to <code>sin</code>.
+
+ <P>The terms for the distance r share their arguments with the terms for λ, so they're summed in the same pass, using the cosine.
+
+ <P>The terms are grouped by the power of the eccentricity factor E that applies to them (0, 1, or 2).
+ The sum for each group is multiplied by E or E<sup>2</sup> only once.
+ 
+ <P>For evenly spaced times, a {@link Stepper} advances the argument of each term by a fixed rotation instead.
+*/
+final class LunarSeries {
+
+  /** The single instance, built from the data in {@link LunarPositionDataLoader}. */
+  static LunarSeries instance() {
+    return INSTANCE;
+  }
+
+  /**
+   Holds the tables of multiple angles, and the results of the most recent evaluation.
+   Creates no objects when evaluating. Not thread-safe.
+  */
+  final class Evaluator {
+
+    /** The angles at the time of the most recent evaluation. */
+    final LunarPosition.Angles angles = new LunarPosition.Angles();
+    /** The sum of the periodic terms for λ, in millionths of a degree, with E applied. */
+    double sumλ;
+    /** The sum of the periodic terms for β, in millionths of a degree, with E applied. */
+    double sumβ;
+    /** The sum of the periodic terms for the distance r, in metres, with E applied. */
+    double sumΔ;
+
+    /** 
+     Nothing is recomputed if the time is the same as for the previous call. That way, the position and the distance 
+     at the same time (for moonrise, for example) share a single evaluation.
+     @param T Julian centuries since J2000. 
+    */
+    void evaluate(double T) {
+      if (T == lastT) {
+        return;
+      }
+      LunarPosition.angles(T, angles);
+      tables.fill(angles.D, angles.M, angles.Mp, angles.F);
+      double E = eccentricityFactor(T);
+      sumλ = sum(λ, E);
+      sumΔ = distanceByPower[0] + E * (distanceByPower[1] + E * distanceByPower[2]); //found in the same pass as λ
+      sumβ = sum(β, E);
+      lastT = T;
+    }
+
+    /** NaN is never equal to anything, so the first call always evaluates. */
+    private double lastT = Double.NaN;
+
+    private final Tables tables = new Tables();
+    private final double[] sumByPower = new double[3];
+    private final double[] distanceByPower = new double[3];
+
+    /** Also fills in the sums for the distance, if the terms have any. */
+    private double sum(Terms terms, double E) {
+      for(int power = 0; power < 3; ++power) {
+        sumByPower[power] = 0.0;
+        distanceByPower[power] = 0.0;
+      }
+      double[] sinD = tables.sinD, cosD = tables.cosD, sinM = tables.sinM, cosM = tables.cosM;
+      double[] sinMp = tables.sinMp, cosMp = tables.cosMp, sinF = tables.sinF, cosF = tables.cosF;
+      for(int i = 0; i < terms.amplitude.length; ++i) {
+        //sin and cos of D·d + M·m
+        int d = terms.D[i];
+        int m = terms.M[i];
+        double s = sinD[d] * cosM[m] + cosD[d] * sinM[m];
+        double c = cosD[d] * cosM[m] - sinD[d] * sinM[m];
+        //add M'·mp
+        int mp = terms.Mp[i];
+        double s2 = s * cosMp[mp] + c * sinMp[mp];
+        double c2 = c * cosMp[mp] - s * sinMp[mp];
+        //add F·f
+        int f = terms.F[i];
+        sumByPower[terms.power[i]] += terms.amplitude[i] * (s2 * cosF[f] + c2 * sinF[f]);
+        if (terms.hasDistance) {
+          distanceByPower[terms.power[i]] += terms.distance[i] * (c2 * cosF[f] - s2 * sinF[f]);
+        }
+      }
+      return sumByPower[0] + E * (sumByPower[1] + E * sumByPower[2]);
+    }
+  }
+
+  /**
+   The sums of the periodic terms at evenly spaced times, such as every hour or every day.
+
+   <P>Over a short span of time, D, M, M', and F change at a nearly constant rate, so the argument of each term
+   is advanced by a fixed rotation, instead of being built again from the tables of multiple angles.
+   Every {@value #RESEED} steps, the arguments are computed exactly, and the rate of each argument
+   is re-computed from its values at the start and end of the next block of steps.
+   Creates no objects when stepping. Not thread-safe.
+  */
+  final class Stepper {
+
+    /** @param step in days. */
+    Stepper(double jdeStart, double step) {
+      this.jdeStart = jdeStart;
+      this.step = step;
+      seed();
+    }
+
+    /** The time (JDE) of the current step. */
+    double jde() {
+      return jde(numSteps);
+    }
+
+    /** The angles at the current time. */
+    final LunarPosition.Angles angles = new LunarPosition.Angles();
+    /** The sum of the periodic terms for λ at the current time, in millionths of a degree, with E applied. */
+    double sumλ;
+    /** The sum of the periodic terms for β at the current time, in millionths of a degree, with E applied. */
+    double sumβ;
+
+    /** Move to the next time. */
+    void step() {
+      ++numSteps;
+      if (numSteps % RESEED == 0) {
+        seed();
+      }
+      else {
+        λRotation.rotate();
+        βRotation.rotate();
+        sum();
+      }
+    }
+
+    private static final int RESEED = 64;
+
+    private final double jdeStart;
+    private final double step;
+    private long numSteps;
+    private final Tables tables = new Tables();
+    private final Rotation λRotation = new Rotation(λ);
+    private final Rotation βRotation = new Rotation(β);
+    private final double[] start = new double[4];
+    private final double[] end = new double[4];
+
+    private double jde(long numSteps) {
+      return jdeStart + numSteps * step;
+    }
+
+    /** Compute the arguments exactly at the current time, and their change per step over the next block of steps. */
+    private void seed() {
+      double T = AstroUtil.julianCenturiesSinceJ2000(jde());
+      LunarPosition.arguments(T, start);
+      LunarPosition.arguments(AstroUtil.julianCenturiesSinceJ2000(jde(numSteps + RESEED)), end);
+      tables.fill(rate(0), rate(1), rate(2), rate(3));
+      λRotation.seedRate(tables);
+      βRotation.seedRate(tables);
+      LunarPosition.angles(T, angles);
+      tables.fill(angles.D, angles.M, angles.Mp, angles.F);
+      λRotation.seedAngle(tables);
+      βRotation.seedAngle(tables);
+      sumAt(T);
+    }
+
+    /** Radians per step. */
+    private double rate(int k) {
+      return Maths.degToRads((end[k] - start[k]) / RESEED);
+    }
+
+    private void sum() {
+      double T = AstroUtil.julianCenturiesSinceJ2000(jde());
+      LunarPosition.angles(T, angles); //for L' and the additional terms
+      sumAt(T);
+    }
+
+    private void sumAt(double T) {
+      double E = eccentricityFactor(T);
+      sumλ = λRotation.sum(E);
+      sumβ = βRotation.sum(E);
+    }
+  }
+
+  /** The factor E that multiplies terms having M. */
+  static double eccentricityFactor(double T) {
+    return 1.0 - 0.002_516*T - 0.000_0074*T*T;
+  }
+
+  // PRIVATE
+
+  /** The largest multiple of D, M, M', or F in the data. */
+  private static final int MAX_MULTIPLE = 4;
+
+  private static final LunarSeries INSTANCE = new LunarSeries();
+
+  private final Terms λ = new Terms(LunarPositionDataLoader.periodicTermsλ(), LunarPositionDataLoader.NUM_COLUMNS_λ);
+  private final Terms β = new Terms(LunarPositionDataLoader.periodicTermsβ(), LunarPositionDataLoader.NUM_COLUMNS_β);
+
+  /** The sines and cosines of the multiples of D, M, M', and F, for a single time. */
+  private static final class Tables {
+    final double[] sinD = new double[2 * MAX_MULTIPLE + 1];
+    final double[] cosD = new double[2 * MAX_MULTIPLE + 1];
+    final double[] sinM = new double[2 * MAX_MULTIPLE + 1];
+    final double[] cosM = new double[2 * MAX_MULTIPLE + 1];
+    final double[] sinMp = new double[2 * MAX_MULTIPLE + 1];
+    final double[] cosMp = new double[2 * MAX_MULTIPLE + 1];
+    final double[] sinF = new double[2 * MAX_MULTIPLE + 1];
+    final double[] cosF = new double[2 * MAX_MULTIPLE + 1];
+
+    /** Radians. */
+    void fill(double D, double M, double Mp, double F) {
+      MultipleAngles.fill(D, sinD, cosD);
+      MultipleAngles.fill(M, sinM, cosM);
+      MultipleAngles.fill(Mp, sinMp, cosMp);
+      MultipleAngles.fill(F, sinF, cosF);
+    }
+
+    /** Fill in the sine and cosine of the argument of each term. */
+    void arguments(Terms terms, double[] sin, double[] cos) {
+      for(int i = 0; i < terms.amplitude.length; ++i) {
+        int d = terms.D[i];
+        int m = terms.M[i];
+        double s = sinD[d] * cosM[m] + cosD[d] * sinM[m];
+        double c = cosD[d] * cosM[m] - sinD[d] * sinM[m];
+        int mp = terms.Mp[i];
+        double s2 = s * cosMp[mp] + c * sinMp[mp];
+        double c2 = c * cosMp[mp] - s * sinMp[mp];
+        int f = terms.F[i];
+        sin[i] = s2 * cosF[f] + c2 * sinF[f];
+        cos[i] = c2 * cosF[f] - s2 * sinF[f];
+      }
+    }
+  }
+
+  /** The current argument of each term for one coordinate, and its change per step. Used by {@link Stepper}. */
+  private static final class Rotation {
+    Rotation(Terms terms) {
+      this.terms = terms;
+      int n = terms.amplitude.length;
+      sin = new double[n];
+      cos = new double[n];
+      sinΔ = new double[n];
+      cosΔ = new double[n];
+    }
+
+    void seedAngle(Tables tables) {
+      tables.arguments(terms, sin, cos);
+    }
+
+    /** The tables hold the multiples of the change per step. */
+    void seedRate(Tables tables) {
+      tables.arguments(terms, sinΔ, cosΔ);
+    }
+
+    void rotate() {
+      for(int i = 0; i < sin.length; ++i) {
+        double s = sin[i] * cosΔ[i] + cos[i] * sinΔ[i];
+        cos[i] = cos[i] * cosΔ[i] - sin[i] * sinΔ[i];
+        sin[i] = s;
+      }
+    }
+
+    /** The sum of the terms, in millionths of a degree. The terms having M are multiplied by E or E squared. */
+    double sum(double E) {
+      sumByPower[0] = 0.0;
+      sumByPower[1] = 0.0;
+      sumByPower[2] = 0.0;
+      for(int i = 0; i < sin.length; ++i) {
+        sumByPower[terms.power[i]] += terms.amplitude[i] * sin[i];
+      }
+      return sumByPower[0] + E * (sumByPower[1] + E * sumByPower[2]);
+    }
+
+    private final Terms terms;
+    private final double[] sin;
+    private final double[] cos;
+    private final double[] sinΔ;
+    private final double[] cosΔ;
+    private final double[] sumByPower = new double[3];
+  }
+
+  private LunarSeries() {}
+
+  /**
+   The terms for one coordinate.
+   The multiples are stored as indexes into the tables of multiple angles.
+  */
+  private static final class Terms {
+    /** @param rows the multiples of D, M, M', F, then the amplitude, and then (for λ only) the distance. */
+    Terms(double[] rows, int numColumns) {
+      int n = rows.length / numColumns;
+      D = new int[n];
+      M = new int[n];
+      Mp = new int[n];
+      F = new int[n];
+      power = new int[n];
+      amplitude = new double[n];
+      distance = new double[n];
+      for(int i = 0, row = 0; i < n; ++i, row += numColumns) {
+        D[i] = index((int)rows[row]);
+        M[i] = index((int)rows[row + 1]);
+        Mp[i] = index((int)rows[row + 2]);
+        F[i] = index((int)rows[row + 3]);
+        power[i] = Math.abs((int)rows[row + 1]);
+        amplitude[i] = rows[row + 4];
+        if (numColumns > 5) {
+          distance[i] = rows[row + 5]; //only the terms for λ have the distance r
+        }
+        hasDistance = hasDistance || distance[i] != 0.0;
+      }
+    }
+    int[] D;
+    int[] M;
+    int[] Mp;
+    int[] F;
+    /** The power of E that applies to the term. */
+    int[] power;
+    /** Millionths of a degree. */
+    double[] amplitude;
+    /** Metres. */
+    double[] distance;
+    boolean hasDistance;
+
+    private static int index(int multiple) {
+      if (Math.abs(multiple) > MAX_MULTIPLE) {
+        throw new IllegalArgumentException("Multiple is too large for the tables: " + multiple);
+      }
+      return MAX_MULTIPLE + multiple;
+    }
+  }
+}
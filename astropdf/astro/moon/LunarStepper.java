@@ -0,0 +1,38 @@
+package astropdf.astro.moon;
+
+import astropdf.astro.coords.EclipticCoords;
+
+/**
+ The Moon's λ and β at evenly spaced times, such as every hour or every day.
+
+ <P>The argument of each periodic term is a sum of multiples of D, M, M', and F.
+ Over a short span of time, these change at a nearly constant rate, so the argument of each term
+ is advanced by a fixed rotation, instead of being built again from the tables of multiple angles
+ (see {@link LunarSeries.Stepper}).
+ The result agrees with {@link LunarPosition#λβ(double)} to much better than the accuracy of the theory itself.
+
+ <P>Get an instance from {@link LunarPosition#stepper(double, double)}. Not thread-safe.
+*/
+public final class LunarStepper {
+
+  /** The time (JDE) of the result that will be returned by the next call to {@link #next()}. */
+  public double jde() {
+    return stepper.jde();
+  }
+
+  /** Return the Moon's λ and β at {@link #jde()}, and then move to the next time. */
+  public EclipticCoords next() {
+    EclipticCoords result = LunarPosition.λβ(stepper.angles, stepper.sumλ, stepper.sumβ);
+    stepper.step();
+    return result;
+  }
+
+  // PRIVATE
+
+  private LunarSeries.Stepper stepper;
+
+  /** @param step in days. */
+  LunarStepper(LunarSeries series, double jdeStart, double step) {
+    this.stepper = series.new Stepper(jdeStart, step);
+  }
+}
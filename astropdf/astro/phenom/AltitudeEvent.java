@@ -61,7 +61,17 @@ public final class AltitudeEvent {
       throw new IllegalArgumentException("Bracket minutes must be 1 or more: " + bracketMinutes);
     }
     this.bracketMinutes = bracketMinutes;
-    this.targetAltitude = Maths.degToRads(targetAltitude);
+    double target = Maths.degToRads(targetAltitude);
+    this.targetAltitude = jde -> target;
+  }
+  
+  /**
+   Constructor, for a target altitude that changes with time.
+   @param targetAltitude returns the target altitude in radians, for a given JDE.
+  */
+  public AltitudeEvent(Config config, int bracketMinutes, Function<Double, Double> targetAltitude) {
+    this(config, bracketMinutes, 0.0);
+    this.targetAltitude = targetAltitude;
   }
  
   /** Target altitude of -0.9 degrees. */
@@ -69,9 +79,36 @@ public final class AltitudeEvent {
     return new AltitudeEvent(config, bracketMinutes, -0.9);
   }
   
-  /** Target altitude of +0.13 degrees. This implementation is not responsive to variations in the Moon's parallax. */
+  /** 
+   Moonrise and moonset, with the target altitude computed from the Moon's actual distance, 
+   as in {@link #forMoon(Config, int, LunarPosition)}, using a <code>LunarPosition</code> of its own.
+   For a fixed target altitude instead, use the constructor, with +0.13 degrees. 
+  */
   public static AltitudeEvent forMoon(Config config, int bracketMinutes) {
-    return new AltitudeEvent(config, bracketMinutes, 0.13);
+    return forMoon(config, bracketMinutes, new LunarPosition());
+  }
+  
+  /**
+   Moonrise and moonset, with the target altitude computed from the Moon's actual distance.
+   
+   <P>The event is when the Moon's upper limb is on the horizon, as seen by an observer at sea level.
+   The topocentric altitude of the Moon's centre is then -34' for refraction, minus the Moon's semi-diameter. 
+   The geocentric altitude (the one computed from <code>LunarPosition.position</code>) is higher than that
+   by the parallax in altitude p, where sin p = sin π cos h, π being the horizontal parallax, and h the topocentric altitude.
+   The target ranges from about +0.05 to +0.20 degrees. The Earth is treated as a sphere.
+   
+   <P>Since the target is correct, a larger bracket can be used for the same accuracy.
+   
+   <P>Pass the same <code>moon</code> object to {@link #searchFor(Phenom, LocalDate, Function)}, as <code>moon::position</code>.
+   The position and the target altitude are found at the same time for each data point, so 
+   they then share a single evaluation of the lunar series.
+  */
+  public static AltitudeEvent forMoon(Config config, int bracketMinutes, LunarPosition moon) {
+    return new AltitudeEvent(config, bracketMinutes, jde -> {
+      double parallax = LunarPosition.horizontalParallax(moon.distance(jde));
+      double topocentric = REFRACTION_AT_HORIZON - LunarPosition.semidiameter(parallax);
+      return topocentric + Math.asin(Math.sin(parallax) * Math.cos(topocentric));
+    });
   }
 
   /** The result of this calculation. */
@@ -111,10 +148,16 @@ public final class AltitudeEvent {
   }
   
   private Config config;
-  private double targetAltitude;
+  private Function<Double, Double> targetAltitude;
   private int bracketMinutes;
+  
+  /** Rads. The standard value for the refraction at the horizon, 34 minutes of arc, with a negative sign. */
+  private static final double REFRACTION_AT_HORIZON = Maths.degToRads(-34.0/60.0);
 
-  /** Data points for the target object, using local date-time. */
+  /** 
+   Data points for the target object, using local date-time. 
+   The value is the altitude minus the target altitude, so the event is where the value crosses zero. 
+  */
   private static final class DataPoints {
     DataPoints(LocalDateTime local, Double value){
       this.time = local;
@@ -145,7 +188,7 @@ public final class AltitudeEvent {
       if (minutes % bracketMinutes == 0) {
         LocalDateTime local = midnight.plusMinutes(minutes);
         AltAz altaz = altAzFrom(local, jdToPosition);
-        result.add(new DataPoints(local, altaz.h));
+        result.add(new DataPoints(local, altaz.h - targetAltitude.apply(jdeFrom(local))));
       }
     }
     return result;
@@ -163,13 +206,16 @@ public final class AltitudeEvent {
       local.getNano(), config.hoursOffsetFromUT(), config.minutesOffsetFromUT(),
       config.longitude()
     ); // 0..2pi
-    double jd = GregorianCal.jdForLocal(local, config);
-    double jde = TT.jd_TT_From(jd, config);
-    Position pos = jdToPosition.apply(jde);
+    Position pos = jdToPosition.apply(jdeFrom(local));
     double ha = in2pi(lst - pos.α);
     return AltAz.from(ha, pos.δ, config.latitude());
   }
 
+  private double jdeFrom(LocalDateTime local) {
+    double jd = GregorianCal.jdForLocal(local, config);
+    return TT.jd_TT_From(jd, config);
+  }
+
   /** 
    Return the pair which bracket the time of the event.
    WARNING: some days will have no event: the return value may be null. 
@@ -180,13 +226,13 @@ public final class AltitudeEvent {
     for(int i = 0; i < targetData.size() - 1; ++i) {
       DataPoints start = targetData.get(i);
       DataPoints end = targetData.get(i+1); //pair-wise (the last one never starts a pair)
-      if(start.value <= targetAltitude && targetAltitude <= end.value) {
+      if(start.value <= 0 && 0 <= end.value) {
         if (Phenom.East == phenom){
           result = new Bracket(start, end);
           break;
         }
       }
-      if(start.value >= targetAltitude && targetAltitude >= end.value) {
+      if(start.value >= 0 && 0 >= end.value) {
         if (Phenom.West == phenom) {
           result = new Bracket(start, end);
           break;
@@ -198,7 +244,7 @@ public final class AltitudeEvent {
 
   /** This might be replaced with Newton-Raphson search, or with a quadratic interplolation instead of a linear one. */
   private Data linearInterpolationWithinThe(Bracket bracket,  Function<Double, Position> jdToPosition) {
-    double p = (targetAltitude - bracket.start.value) / (bracket.end.value - bracket.start.value); //fraction of the bracket
+    double p = (0 - bracket.start.value) / (bracket.end.value - bracket.start.value); //fraction of the bracket
     long seconds = Math.round(p * bracketMinutes * 60); 
     LocalDateTime when = bracket.start.time.plusSeconds(seconds);
     AltAz altaz = altAzFrom(when, jdToPosition);
@@ -227,5 +273,18 @@ public final class AltitudeEvent {
     else {
       System.out.println("No event found.");
     }
+    
+    //moonrise with the fixed target, and with the target from the Moon's distance, for various brackets
+    for(int bracket : new int[] {1, 10, 30, 60}) {
+      long start = System.nanoTime();
+      Optional<Data> fixed = new AltitudeEvent(config, bracket, 0.13).searchFor(Phenom.East, LocalDate.parse("2024-12-13"), moon::position);
+      long fixedTime = System.nanoTime() - start;
+      start = System.nanoTime();
+      Optional<Data> exact = AltitudeEvent.forMoon(config, bracket, moon).searchFor(Phenom.East, LocalDate.parse("2024-12-13"), moon::position);
+      long exactTime = System.nanoTime() - start;
+      System.out.println("Moonrise, bracket " + bracket + "m, fixed target: " + fixed.map(d -> d.time).orElse(null) + " (" + fixedTime / 1000 + "µs)" +  
+        ", from the distance: " + exact.map(d -> d.time).orElse(null) + " (" + exactTime / 1000 + "µs)"
+      );
+    }
   }
 }
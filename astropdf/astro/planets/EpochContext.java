@@ -0,0 +1,125 @@
+package astropdf.astro.planets;
+
+import static astropdf.math.Maths.radsToDegs;
+
+import astropdf.astro.coords.LBR;
+import astropdf.astro.coords.Position;
+import astropdf.astro.moon.LunarPosition;
+import astropdf.astro.precession.LongTermPrecession;
+import astropdf.astro.precession.Nutation;
+import astropdf.astro.precession.PrecessionCache;
+import astropdf.astro.time.AstroUtil;
+import astropdf.astro.time.GregorianCal;
+import astropdf.astro.time.SiderealTime;
+import astropdf.astro.time.TT;
+import astropdf.math.Maths;
+import astropdf.util.LogUtil;
+
+/**
+ Data that depends only on the time, and not on which body is being observed.
+
+ <P>When the positions of several bodies are needed at the same time, the same Earth position, obliquity,
+ nutation, and sidereal time would otherwise be computed again for each body.
+ Instead, create one of these objects for each time, and pass it to each body's calculation:
+ {@link PlanetPosition#position(EpochContext)}, {@link SolarPosition#apparentPosition(EpochContext)}, and
+ {@link LunarPosition#position(EpochContext)}.
+
+ <P>All items are computed in the constructor. This class is immutable, and can be shared between threads.
+*/
+public final class EpochContext {
+
+  /** @param jde the time (TT). */
+  public EpochContext(double jde) {
+    this(jde, new LongTermPrecession().obliquity(jde));
+  }
+
+  /** 
+   As in {@link #EpochContext(double)}, but with the obliquity interpolated from a cache. 
+   @param precession must cover the given time.
+  */
+  public EpochContext(double jde, PrecessionCache precession) {
+    this(jde, precession.obliquity(jde));
+  }
+
+  /** The time (TT). */
+  public double jde() { return jde; }
+
+  /** The heliocentric position of the Earth. Returns a new object each time. */
+  public LBR earth() {
+    LBR result = new LBR();
+    result.L = earthL;
+    result.B = earthB;
+    result.R = earthR;
+    return result;
+  }
+
+  /** The mean obliquity of the ecliptic, in radians. */
+  public double obliquity() { return obliquity; }
+
+  /** Nutation in longitude, in radians. */
+  public double Δψ() { return Δψ; }
+
+  /** Nutation in obliquity, in radians. */
+  public double Δε() { return Δε; }
+
+  /**
+   The apparent sidereal time at Greenwich, in radians 0..2pi.
+   UT is taken as TT minus {@link TT#CURRENT_ΔT}.
+   Add the longitude of the observer to get the local sidereal time.
+  */
+  public double siderealTime() { return siderealTime; }
+
+  // PRIVATE
+
+  private double jde;
+  private double earthL;
+  private double earthB;
+  private double earthR;
+  private double obliquity;
+  private double Δψ;
+  private double Δε;
+  private double siderealTime;
+
+  private EpochContext(double jde, double obliquity) {
+    this.jde = jde;
+    LBR lbr = new PlanetPosition(Planet.Earth).lbr(jde);
+    this.earthL = lbr.L;
+    this.earthB = lbr.B;
+    this.earthR = lbr.R;
+    this.obliquity = obliquity;
+    Nutation nutation = Nutation.at(jde);
+    this.Δψ = nutation.Δψ();
+    this.Δε = nutation.Δε();
+    double jd = jde - TT.CURRENT_ΔT / AstroUtil.SECONDS_PER_DAY; //UT
+    this.siderealTime = Maths.in2pi(SiderealTime.greenwichMeanSiderealTime(jd) + Δψ * Math.cos(obliquity));
+  }
+
+  /** Informal test harness. */
+  public static void main(String... args) {
+    //all planets, the Sun, and the Moon, at 20h every day for a year
+    double jd = GregorianCal.jdForGreenwich(2025, 1, 1.0 + 20/24.0);
+    PlanetPosition[] planets = new PlanetPosition[Planet.WITHOUT_EARTH.length];
+    for(int i = 0; i < planets.length; ++i) {
+      planets[i] = new PlanetPosition(Planet.WITHOUT_EARTH[i]);
+    }
+    SolarPosition sun = new SolarPosition();
+    LunarPosition moon = new LunarPosition();
+    double maxDiff = 0.0;
+    PrecessionCache precession = new PrecessionCache(jd, jd + 365, PrecessionCache.DEFAULT_SPACING);
+    for(int day = 0; day < 365; ++day) {
+      double jde = jd + day;
+      EpochContext context = new EpochContext(jde, precession);
+      for(PlanetPosition planet : planets) {
+        maxDiff = Math.max(maxDiff, diff(planet.position(context), planet.position(jde)));
+      }
+      maxDiff = Math.max(maxDiff, diff(sun.apparentPosition(context), sun.apparentPosition(jde)));
+      maxDiff = Math.max(maxDiff, diff(moon.position(context), moon.position(jde)));
+    }
+    LogUtil.log("Max difference from computing each body separately: " + radsToDegs(maxDiff) * 3600 + " arcsec");
+    LogUtil.log("Apparent sidereal time at Greenwich, at the start: " + AstroUtil.radsToTimeString(new EpochContext(jd).siderealTime()));
+  }
+
+  private static double diff(Position a, Position b) {
+    return Math.max(Math.abs(a.α - b.α), Math.abs(a.δ - b.δ));
+  }
+}
@@ -8,15 +8,13 @@ import static java.lang.Math.atan;
 import static java.lang.Math.cos;
 import static java.lang.Math.sin;
 
-import java.util.List;
-import java.util.Map;
-
 import astropdf.astro.coords.Coord;
 import astropdf.astro.coords.EclipticCoords;
 import astropdf.astro.coords.LBR;
 import astropdf.astro.coords.Position;
 import astropdf.astro.time.AstroUtil;
 import astropdf.astro.time.GregorianCal;
+import astropdf.math.Maths;
 import astropdf.util.LogUtil;
 
 /** 
@@ -39,10 +37,21 @@ import astropdf.util.LogUtil;
 */
 public final class PlanetPosition {
 
+  /** The underlying data is shared by all objects; it's read from the file system only once per planet. */
   public PlanetPosition(Planet planet) {
-    PlanetPositionDataLoader loader = new PlanetPositionDataLoader();
     this.planet = planet;
-    this.periodicTerms = loader.periodicTermsForThe(planet);
+    this.series = PlanetSeriesRegistry.seriesFor(planet);
+  }
+  
+  /** 
+   Use a truncated version of the series, with terms dropped according to the requested accuracy.
+   The number of terms and the resulting error bounds are available from {@link #numTerms()} and {@link #errorBound(Coord)}.
+   The same truncation is applied to the Earth, when computing the geocentric position. 
+  */
+  public PlanetPosition(Planet planet, Truncation truncation) {
+    this.planet = planet;
+    this.truncation = truncation;
+    this.series = PlanetSeriesRegistry.seriesFor(planet).truncated(truncation);
   }
   
   public LBR lbr(double jde) {
@@ -54,24 +63,146 @@ public final class PlanetPosition {
     return result;
   }
 
+  /**
+   The heliocentric coordinates, and their rates of change, computed in the same pass.
+   The rates allow solvers (for conjunctions, stationary points, and so on) to use Newton's method
+   instead of dense sampling.
+   @param rates receives dL/dt, dB/dt (radians per day), and dR/dt (AU per day).
+  */
+  public LBR lbr(double jde, LBR rates) {
+    LBR result = new LBR();
+    double τ = AstroUtil.julianMilleniaSinceJ2000(jde);
+    double[] valueAndRate = new double[2];
+    series.valueAndRate(Coord.L, τ, valueAndRate);
+    result.L = in2pi(valueAndRate[0]);
+    rates.L = valueAndRate[1] / AstroUtil.DAYS_PER_JULIAN_MILLENIUM;
+    series.valueAndRate(Coord.B, τ, valueAndRate);
+    result.B = valueAndRate[0];
+    rates.B = valueAndRate[1] / AstroUtil.DAYS_PER_JULIAN_MILLENIUM;
+    series.valueAndRate(Coord.R, τ, valueAndRate);
+    result.R = valueAndRate[0];
+    rates.R = valueAndRate[1] / AstroUtil.DAYS_PER_JULIAN_MILLENIUM;
+    return result;
+  }
+
+  /**
+   The heliocentric coordinates for many times at once.
+   This is faster than calling {@link #lbr(double)} repeatedly, since the series are evaluated 
+   for blocks of times, and each coefficient is read only once per block.
+   @param jdes the times (JDE).
+   @param outL receives L in radians 0..2pi; at least as long as <code>jdes</code>.
+   @param outB receives B in radians; at least as long as <code>jdes</code>.
+   @param outR receives R in AU; at least as long as <code>jdes</code>.
+  */
+  public void lbr(double[] jdes, double[] outL, double[] outB, double[] outR) {
+    if (outL.length < jdes.length || outB.length < jdes.length || outR.length < jdes.length) {
+      throw new IllegalArgumentException("Output arrays are shorter than the array of times: " + jdes.length);
+    }
+    double[] τ = new double[jdes.length];
+    for(int i = 0; i < jdes.length; ++i) {
+      τ[i] = AstroUtil.julianMilleniaSinceJ2000(jdes[i]);
+    }
+    series.values(Coord.L, τ, outL);
+    series.values(Coord.B, τ, outB);
+    series.values(Coord.R, τ, outR);
+    for(int i = 0; i < jdes.length; ++i) {
+      outL[i] = in2pi(outL[i]);
+    }
+  }
+
+  /**
+   Return the heliocentric coordinates at evenly spaced times, starting at the given time.
+   This is the fastest way to build a table of positions. 
+   @param step in days; may be negative.
+  */
+  public PlanetStepper stepper(double jdeStart, double step) {
+    return new PlanetStepper(series, jdeStart, step);
+  }
+
   /** Called only if the planet passed to the constructor is NOT the Earth. */
   public Position position(double jde) {
-    if (planet == Planet.Earth) {
-      throw new RuntimeException("Can't pass planet Earth for this method.");
-    }
-    
+    checkNotEarth();
     LBR planet = lbr(jde);
-    if (earthHelio == null) {
-      earthHelio = new PlanetPosition(Planet.Earth);
+    LBR earth = earthHelio().lbr(jde);
+    EclipticCoords ecl = geocentric(planet, earth);
+    return ecl.toRaDec(jde);
+  }
+  
+  /**
+   As in {@link #position(double)}, but using the Earth's position and the obliquity already computed for the given time.
+   Called only if the planet passed to the constructor is NOT the Earth. 
+  */
+  public Position position(EpochContext context) {
+    checkNotEarth();
+    LBR planet = lbr(context.jde());
+    EclipticCoords ecl = geocentric(planet, context.earth());
+    return ecl.toRaDecWithObliquity(context.obliquity());
+  }
+
+  /**
+   The position corrected for light-time: the planet is seen where it was when the light left it.
+   The light-time is found by iteration, but the series aren't evaluated again: the planet's 
+   earlier coordinates are extrapolated using the rates from {@link #lbr(double, LBR)}.
+   Called only if the planet passed to the constructor is NOT the Earth. 
+  */
+  public Position positionWithLightTime(double jde) {
+    checkNotEarth();
+    LBR rates = new LBR();
+    LBR planet = lbr(jde, rates);
+    LBR earth = earthHelio().lbr(jde);
+    LBR seen = planet;
+    for(int i = 0; i < LIGHT_TIME_ITERATIONS; ++i) {
+      double lightTime = LIGHT_TIME_DAYS_PER_AU * distance(seen, earth);
+      seen = lbr(planet.L - rates.L * lightTime, planet.B - rates.B * lightTime, planet.R - rates.R * lightTime);
     }
-    LBR earth = earthHelio.lbr(jde);
+    EclipticCoords ecl = geocentric(seen, earth);
+    return ecl.toRaDec(jde);
+  }
+  
+  /** 
+   The positions for many times at once, using {@link #lbr(double[], double[], double[], double[])} for both the planet and the Earth.
+   Called only if the planet passed to the constructor is NOT the Earth. 
+  */
+  public Position[] position(double[] jdes) {
+    checkNotEarth();
+    int n = jdes.length;
+    double[] L = new double[n];
+    double[] B = new double[n];
+    double[] R = new double[n];
+    lbr(jdes, L, B, R);
+    double[] earthL = new double[n];
+    double[] earthB = new double[n];
+    double[] earthR = new double[n];
+    earthHelio().lbr(jdes, earthL, earthB, earthR);
+    Position[] result = new Position[n];
+    for(int i = 0; i < n; ++i) {
+      EclipticCoords ecl = geocentric(lbr(L[i], B[i], R[i]), lbr(earthL[i], earthB[i], earthR[i]));
+      result[i] = ecl.toRaDec(jdes[i]);
+    }
+    return result;
+  }
+  
+  /** The geocentric λ and β of a planet, from the heliocentric coordinates of the planet and the Earth. */
+  public static EclipticCoords geocentric(LBR planet, LBR earth) {
     double x = x_c(planet) - x_c(earth);
     double y = y_c(planet) - y_c(earth);
     double z = z_c(planet) - z_c(earth);
     double λ = atan3(y, x); //0..2pi
     double β = atan(z / (Math.sqrt(sqr(x) + sqr(y)))); // -pi/2..+pi/2
-    EclipticCoords ecl = new EclipticCoords(λ, β);
-    return ecl.toRaDec(jde);
+    return new EclipticCoords(λ, β);
+  }
+  
+  /** The number of periodic terms used by this object, for all coordinates. */
+  public int numTerms() {
+    return series.numTerms();
+  }
+  
+  /** 
+   The guaranteed bound on the error in the given coordinate caused by truncating the series, in radians or AU. 
+   Zero if the series is not truncated. This doesn't include the error in VSOP87D itself.
+  */
+  public double errorBound(Coord coord) {
+    return series.errorBound(coord);
   }
   
   /** Heliocentric mean ecliptic longitude L of the planet, in radians 0..2pi. */
@@ -89,36 +220,57 @@ public final class PlanetPosition {
     return coord(τ, Coord.R);
   }
 
-  private Map<Param, List<PeriodicTerm>> periodicTerms;
+  /** The time taken by light to travel 1 AU, in days. */
+  private static final double LIGHT_TIME_DAYS_PER_AU = 0.005_775_518_3;
+  private static final int LIGHT_TIME_ITERATIONS = 2;
+  
+  private PlanetSeries series;
   private Planet planet;
+  private Truncation truncation;
   private PlanetPosition earthHelio;
   
   private double coord(double τ, Coord coord) {
-    double result = 0.0;
-    for(Param param : Param.values()) { //not all of these will be in the data! 
-      //filter-in params for the given coord
-      if (param.name().startsWith(coord.name())) {
-        if (periodicTerms.get(param) != null) { //not all of these will be in the data!
-          double sum = 0.0;
-          for(PeriodicTerm pt : periodicTerms.get(param)) {
-            sum = sum + pt.contributionToSum(τ); 
-          }
-          result = result + sum * Math.pow(τ, param.power()); 
-        }
-      }
+    return series.value(coord, τ); 
+  }
+  
+  private void checkNotEarth() {
+    if (planet == Planet.Earth) {
+      throw new RuntimeException("Can't pass planet Earth for this method.");
+    }
+  }
+  
+  private PlanetPosition earthHelio() {
+    if (earthHelio == null) {
+      earthHelio = (truncation == null) ? new PlanetPosition(Planet.Earth) : new PlanetPosition(Planet.Earth, truncation);
     }
-    return result; 
+    return earthHelio;
   }
   
-  private double x_c(LBR lbr) {
+  private static LBR lbr(double L, double B, double R) {
+    LBR result = new LBR();
+    result.L = L;
+    result.B = B;
+    result.R = R;
+    return result;
+  }
+  
+  /** The distance between the planet and the Earth, in AU. */
+  private static double distance(LBR planet, LBR earth) {
+    double x = x_c(planet) - x_c(earth);
+    double y = y_c(planet) - y_c(earth);
+    double z = z_c(planet) - z_c(earth);
+    return Math.sqrt(sqr(x) + sqr(y) + sqr(z));
+  }
+  
+  private static double x_c(LBR lbr) {
     return lbr.R * cos (lbr.B) * cos (lbr.L);
   }
   
-  private double y_c(LBR lbr) {
+  private static double y_c(LBR lbr) {
     return lbr.R * cos (lbr.B) * sin (lbr.L);
   }
   
-  private double z_c(LBR lbr) {
+  private static double z_c(LBR lbr) {
     return lbr.R *  sin (lbr.B);
   }
   
@@ -133,6 +285,51 @@ public final class PlanetPosition {
     LogUtil.log("R: " + lbr.R + " AU.");
     
     LogUtil.log("Position: " + venus.position(jd));
+    
+    //the analytic rates versus a numerical derivative
+    LBR rates = new LBR();
+    venus.lbr(jd, rates);
+    double h = 0.01;
+    LBR ahead = venus.lbr(jd + h);
+    LBR behind = venus.lbr(jd - h);
+    LogUtil.log("dL/dt: " + radsToDegs(rates.L) + " numerical: " + radsToDegs((ahead.L - behind.L) / (2*h)) + " degs/day.");
+    LogUtil.log("dB/dt: " + radsToDegs(rates.B) + " numerical: " + radsToDegs((ahead.B - behind.B) / (2*h)) + " degs/day.");
+    LogUtil.log("dR/dt: " + rates.R + " numerical: " + (ahead.R - behind.R) / (2*h) + " AU/day.");
+    //compare with Meeus 1991, example 32.a, whose apparent position also includes aberration and nutation
+    LogUtil.log("Position with light-time: " + venus.positionWithLightTime(jd));
+    
+    //about 10 arcseconds, for 2000..2100
+    double tolerance = Maths.arcsecToRads(10.0);
+    Truncation truncation = new Truncation(tolerance, 1.0E-5, GregorianCal.jdForGreenwich(2000, 1, 1.0), GregorianCal.jdForGreenwich(2100, 1, 1.0));
+    PlanetPosition truncated = new PlanetPosition(Planet.Venus, truncation);
+    LogUtil.log(
+      "Truncated VSOP87D for Venus: " + truncated.numTerms() + " of " + venus.numTerms() + " terms." + 
+      " Error bounds L:" + truncated.errorBound(Coord.L) + " B:" + truncated.errorBound(Coord.B) + " R:" + truncated.errorBound(Coord.R)
+    );
+    lbr = truncated.lbr(jd);
+    LogUtil.log("Truncated L: " + radsToDegs(lbr.L) + " degs.");
+    LogUtil.log("Truncated position: " + truncated.position(jd));
+    
+    //daily for a year, all at once
+    double[] jdes = new double[365];
+    for(int i = 0; i < jdes.length; ++i) {
+      jdes[i] = jd + i;
+    }
+    Position[] positions = venus.position(jdes);
+    LogUtil.log("Batch position: " + positions[0]);
+    LogUtil.log("Batch position, one year later: " + positions[364] + " vs " + venus.position(jdes[364]));
+    
+    //hourly for a year: the stepper versus the direct calculation
+    PlanetStepper stepper = venus.stepper(jd, 1/24.0);
+    double maxDiff = 0.0;
+    for(int i = 0; i < 24*365; ++i) {
+      double jde = stepper.jde();
+      LBR stepped = stepper.next();
+      LBR direct = venus.lbr(jde);
+      maxDiff = Math.max(maxDiff, Math.abs(in2pi(stepped.L - direct.L + Math.PI) - Math.PI));
+      maxDiff = Math.max(maxDiff, Math.abs(stepped.B - direct.B));
+    }
+    LogUtil.log("Stepper, max difference from the direct calculation: " + radsToDegs(maxDiff) * 3600 + " arcsec");
   }
   
 }
\ No newline at end of file
@@ -4,23 +4,64 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import astropdf.astro.coords.Coord;
+import astropdf.util.CoefficientBundle;
 import astropdf.util.DataFileReader;
 import astropdf.util.LogUtil;
 
 /** 
- Load VSOP87D data for a planet, using data files in the native directory.
+ Load VSOP87D data for a planet.
+ The data is read from the {@link CoefficientBundle}, if it exists; otherwise, the text data files in the native directory are parsed.
 */
-final class PlanetPositionDataLoader {
+public final class PlanetPositionDataLoader {
 
   /** 
    Return a data structure to the caller containing all periodic terms for the given planet, 
-   for all parameters defined in the {@link Param} enumeration. 
+   for all parameters defined in the {@link Param} enumeration. Not all params are present for all planets.
+   For each param, the terms are row after row, in the same layout as the {@link CoefficientBundle}.
+   Each row is the amplitude A (radians or AU), the phase B (radians), and the frequency C (radians per millenium). 
   */
-  Map<Param, List<PeriodicTerm>> periodicTermsForThe(Planet planet) {
-    LogUtil.log("Loading periodic terms for " + planet);
-    return readPeriodicTermData(planet);
+  Map<Param, double[]> periodicTermsForThe(Planet planet) {
+    Map<Param, double[]> result = new LinkedHashMap<>();
+    Optional<CoefficientBundle> bundle = CoefficientBundle.instance();
+    if (bundle.isPresent() && bundle.get().has(sectionName(planet, Param.L0))) {
+      LogUtil.log("Loading periodic terms for " + planet + " from the coefficient bundle");
+      for(Param param : Param.values()) {
+        String name = sectionName(planet, param);
+        if (bundle.get().has(name)) {
+          result.put(param, bundle.get().values(name)); //no parsing is needed
+        }
+      }
+    }
+    else {
+      LogUtil.log("Loading periodic terms for " + planet);
+      Map<Param, List<double[]>> rows = readPeriodicTermData(planet);
+      for(Param param : rows.keySet()) {
+        result.put(param, CoefficientBundle.flatten(rows.get(param)));
+      }
+    }
+    return result;
+  }
+  
+  /** The number of items in each row of the data returned by {@link #periodicTermsForThe(Planet)}. */
+  static final int NUM_COLUMNS = 3;
+  
+  /**
+   The data for all planets, parsed from the text data files, as sections of a {@link CoefficientBundle}.
+   Each row is the amplitude A, the phase B, and the frequency C of a periodic term.
+  */
+  public static Map<String, double[][]> bundleSections() {
+    Map<String, double[][]> result = new LinkedHashMap<>();
+    PlanetPositionDataLoader loader = new PlanetPositionDataLoader();
+    for(Planet planet : Planet.values()) {
+      Map<Param, List<double[]>> periodicTerms = loader.readPeriodicTermData(planet);
+      for(Param param : periodicTerms.keySet()) {
+        result.put(sectionName(planet, param), periodicTerms.get(param).toArray(new double[0][]));
+      }
+    }
+    return result;
   }
   
   // PRIVATE 
@@ -29,12 +70,12 @@ final class PlanetPositionDataLoader {
   private static final String FILE_NAME_END = ".utf8";
   private static final String PARAM_HEADER = " VSOP87";
   
-  private Map<Param, List<PeriodicTerm>> readPeriodicTermData(Planet planet) {
-    Map<Param, List<PeriodicTerm>> result = new LinkedHashMap<Param, List<PeriodicTerm>>();
+  private Map<Param, List<double[]>> readPeriodicTermData(Planet planet) {
+    Map<Param, List<double[]>> result = new LinkedHashMap<Param, List<double[]>>();
     DataFileReader reader = new DataFileReader();
     List<String> lines = reader.readFileUTF8(PlanetPositionDataLoader.class, dataFileNameFor(planet));
     Param param = null;
-    List<PeriodicTerm> periodicTerms = null;
+    List<double[]> periodicTerms = null;
     for(String line : lines) {
       if (isParamHeader(line)) {
         if (param != null) {
@@ -56,6 +97,11 @@ final class PlanetPositionDataLoader {
     return result;
   }
   
+  /** For example, 'vsop87D-earth-L0'. */
+  private static String sectionName(Planet planet, Param param) {
+    return FILE_NAME_START + planet.name().toLowerCase() + "-" + param;
+  }
+  
   private String dataFileNameFor(Planet planet) {
     return FILE_NAME_START + planet.name().toLowerCase() + FILE_NAME_END;
   }
@@ -78,16 +124,16 @@ final class PlanetPositionDataLoader {
   /* 
    4310    2  0  0  1  0  0  0  0  0  0  0  0  0 -0.00748171065    -0.03256824823     0.03341656456 4.66925680417    6283.07584999140
   */
-  private PeriodicTerm periodicTermFor(String line) {
-    PeriodicTerm result = new PeriodicTerm();
+  private double[] periodicTermFor(String line) {
+    double[] result = new double[NUM_COLUMNS];
     //careful! make sure you get all of the data
-    result.A = Double.valueOf(slice(line, 80,98)); //amplitude rads
-    result.B = Double.valueOf(slice(line, 99,112)); //phase rads
-    result.C = Double.valueOf(slice(line, 112,132)); //freq rads/millenia
+    result[0] = Double.valueOf(slice(line, 80,98)); //amplitude A rads
+    result[1] = Double.valueOf(slice(line, 99,112)); //phase B rads
+    result[2] = Double.valueOf(slice(line, 112,132)); //freq C rads/millenia
     return result;
   }
   
-  private void countTheTerms(Map<Param, List<PeriodicTerm>> periodicTerms, Planet planet) {
+  private void countTheTerms(Map<Param, List<double[]>> periodicTerms, Planet planet) {
     int count = 0;
     for(Param param : periodicTerms.keySet()) {
       int contribution = periodicTerms.get(param).size();
@@ -0,0 +1,360 @@
+package astropdf.astro.planets;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import astropdf.astro.coords.Coord;
+
+/**
+ The VSOP87D series for a single planet, compiled into primitive arrays.
+
+ <P>For each coordinate (L, B, R), the terms for all powers of τ are stored end-to-end in three
+ parallel arrays, one each for the amplitude A, the phase B, and the frequency C.
+ An array of offsets gives the index of the first term for each power of τ.
+
+ <P>The sums for the various powers of τ are combined using Horner's rule, so no call
+ to <code>Math.pow</code> is needed.
+*/
+final class PlanetSeries {
+
+  /** 
+   The periodic terms are copied; the given data structure is not retained.
+   @param periodicTerms for each param, the rows of A, B, C; see {@link PlanetPositionDataLoader#periodicTermsForThe(Planet)}.
+  */
+  PlanetSeries(Map<Param, double[]> periodicTerms) {
+    for(Coord coord : Coord.values()) {
+      compile(coord, periodicTerms);
+    }
+  }
+
+  /**
+   Return the value of the given coordinate, in radians or AU.
+   The value of L is not placed in the range 0..2pi.
+   @param τ Julian millenia since J2000.
+  */
+  double value(Coord coord, double τ) {
+    int idx = coord.ordinal();
+    double[] a = A[idx];
+    double[] b = B[idx];
+    double[] c = C[idx];
+    int[] start = this.start[idx];
+    double result = 0.0;
+    for(int power = start.length - 2; power >= 0; --power) {
+      double sum = 0.0;
+      for(int i = start[power]; i < start[power + 1]; ++i) {
+        sum = sum + a[i] * cos(b[i] + c[i] * τ);
+      }
+      result = result * τ + sum; //Horner's rule
+    }
+    return result;
+  }
+
+  /**
+   Return the value of the given coordinate, and its rate of change, in the same pass.
+   The derivative of each term A·cos(B + Cτ) is -A·C·sin(B + Cτ); the powers of τ are 
+   handled by differentiating Horner's rule.
+   @param τ Julian millenia since J2000.
+   @param result receives the value in radians or AU (index 0), and its rate of change per Julian millenium (index 1).
+  */
+  void valueAndRate(Coord coord, double τ, double[] result) {
+    int idx = coord.ordinal();
+    double[] a = A[idx];
+    double[] b = B[idx];
+    double[] c = C[idx];
+    int[] start = this.start[idx];
+    double value = 0.0;
+    double rate = 0.0;
+    for(int power = start.length - 2; power >= 0; --power) {
+      double sum = 0.0;
+      double sumRate = 0.0;
+      for(int i = start[power]; i < start[power + 1]; ++i) {
+        double angle = b[i] + c[i] * τ;
+        sum = sum + a[i] * cos(angle);
+        sumRate = sumRate - a[i] * c[i] * sin(angle);
+      }
+      rate = rate * τ + value + sumRate; //the derivative of Horner's rule
+      value = value * τ + sum;
+    }
+    result[0] = value;
+    result[1] = rate;
+  }
+
+  /**
+   Return the value of the given coordinate for many times at once.
+   The times are processed in blocks. Within a block, each coefficient is read only once,
+   and then applied to all of the times in the block.
+   @param τ Julian millenia since J2000.
+   @param out receives the result for each item in τ; at least as long as τ.
+  */
+  void values(Coord coord, double[] τ, double[] out) {
+    int idx = coord.ordinal();
+    double[] a = A[idx];
+    double[] b = B[idx];
+    double[] c = C[idx];
+    int[] start = this.start[idx];
+    double[] sum = new double[BLOCK];
+    for(int from = 0; from < τ.length; from = from + BLOCK) {
+      int to = Math.min(from + BLOCK, τ.length);
+      Arrays.fill(out, from, to, 0.0);
+      for(int power = start.length - 2; power >= 0; --power) {
+        Arrays.fill(sum, 0.0);
+        for(int i = start[power]; i < start[power + 1]; ++i) {
+          double ai = a[i];
+          double bi = b[i];
+          double ci = c[i];
+          for(int j = from; j < to; ++j) {
+            sum[j - from] = sum[j - from] + ai * cos(bi + ci * τ[j]);
+          }
+        }
+        for(int j = from; j < to; ++j) {
+          out[j] = out[j] * τ[j] + sum[j - from]; //Horner's rule
+        }
+      }
+    }
+  }
+
+  /**
+   Evaluates this series at evenly spaced times.
+   
+   <P>Instead of calling <code>cos</code> for each term at each time, the angle B + Cτ of each term 
+   is advanced by a fixed rotation through the angle CΔτ, using the identities for cos(x + y) and sin(x + y). 
+   Rounding errors slowly accumulate, so the angles are re-computed exactly every {@value #RESEED} steps.
+  */
+  final class Stepper {
+    
+    /** @param τStart Julian millenia since J2000. @param Δτ the step, in Julian millenia. */
+    Stepper(double τStart, double Δτ) {
+      this.τStart = τStart;
+      this.Δτ = Δτ;
+      for(int idx = 0; idx < NUM_COORDS; ++idx) {
+        int n = A[idx].length;
+        cos[idx] = new double[n];
+        sin[idx] = new double[n];
+        cosΔ[idx] = new double[n];
+        sinΔ[idx] = new double[n];
+        for(int i = 0; i < n; ++i) {
+          cosΔ[idx][i] = Math.cos(C[idx][i] * Δτ);
+          sinΔ[idx][i] = Math.sin(C[idx][i] * Δτ);
+        }
+      }
+      seed();
+    }
+    
+    /** The value of the given coordinate at the current time. The value of L is not placed in the range 0..2pi.  */
+    double value(Coord coord) {
+      int idx = coord.ordinal();
+      double[] a = A[idx];
+      double[] cos = this.cos[idx];
+      int[] start = PlanetSeries.this.start[idx];
+      double result = 0.0;
+      for(int power = start.length - 2; power >= 0; --power) {
+        double sum = 0.0;
+        for(int i = start[power]; i < start[power + 1]; ++i) {
+          sum = sum + a[i] * cos[i];
+        }
+        result = result * τ + sum; //Horner's rule
+      }
+      return result;
+    }
+    
+    /** Move to the next time. */
+    void step() {
+      ++numSteps;
+      τ = τStart + numSteps * Δτ; //no accumulated error in the time itself
+      if (numSteps % RESEED == 0) {
+        seed();
+      }
+      else {
+        for(int idx = 0; idx < NUM_COORDS; ++idx) {
+          double[] cos = this.cos[idx];
+          double[] sin = this.sin[idx];
+          double[] cosΔ = this.cosΔ[idx];
+          double[] sinΔ = this.sinΔ[idx];
+          for(int i = 0; i < cos.length; ++i) {
+            double c = cos[i] * cosΔ[i] - sin[i] * sinΔ[i];
+            sin[i] = sin[i] * cosΔ[i] + cos[i] * sinΔ[i];
+            cos[i] = c;
+          }
+        }
+      }
+    }
+    
+    private double τStart;
+    private double Δτ;
+    private double τ;
+    private long numSteps;
+    private final double[][] cos = new double[NUM_COORDS][];
+    private final double[][] sin = new double[NUM_COORDS][];
+    private final double[][] cosΔ = new double[NUM_COORDS][];
+    private final double[][] sinΔ = new double[NUM_COORDS][];
+    
+    /** Compute the angles exactly, at the current time. */
+    private void seed() {
+      τ = τStart + numSteps * Δτ;
+      for(int idx = 0; idx < NUM_COORDS; ++idx) {
+        for(int i = 0; i < A[idx].length; ++i) {
+          double angle = B[idx][i] + C[idx][i] * τ;
+          cos[idx][i] = Math.cos(angle);
+          sin[idx][i] = Math.sin(angle);
+        }
+      }
+    }
+  }
+
+  /**
+   Return a new series with the smallest terms dropped, according to the given accuracy.
+   The terms are ranked by their worst-case contribution |A|·|τ|<sup>k</sup> over the time span.
+   Terms are dropped, smallest first, as long as the sum of the dropped contributions doesn't 
+   exceed the tolerance. That sum is a guaranteed bound on the error; see {@link #errorBound(Coord)}.
+  */
+  PlanetSeries truncated(Truncation truncation) {
+    PlanetSeries result = new PlanetSeries();
+    double τMax = truncation.τMax();
+    for(Coord coord : Coord.values()) {
+      double tolerance = (Coord.R == coord) ? truncation.radialTolerance() : truncation.angularTolerance();
+      truncate(coord, tolerance, τMax, result);
+    }
+    return result;
+  }
+  
+  /** 
+   The guaranteed bound on the error in the given coordinate, caused by dropping terms from the series.
+   Radians or AU. Zero for the full series.
+  */
+  double errorBound(Coord coord) {
+    return errorBound[coord.ordinal()];
+  }
+  
+  /** The total number of periodic terms for all coordinates. */
+  int numTerms() {
+    int result = 0;
+    for(double[] a : A) {
+      result = result + a.length;
+    }
+    return result;
+  }
+
+  // PRIVATE
+
+  private static final int NUM_COORDS = Coord.values().length;
+  
+  /** The number of times processed together, when evaluating many times at once. Small enough to stay in the L1 cache. */
+  private static final int BLOCK = 64;
+  
+  /** The number of steps between exact re-computations of the angles, in {@link Stepper}. */
+  private static final int RESEED = 64;
+
+  /** Amplitude in radians or AU, indexed by the ordinal of the {@link Coord}. */
+  private final double[][] A = new double[NUM_COORDS][];
+  /** Phase in radians. */
+  private final double[][] B = new double[NUM_COORDS][];
+  /** Frequency in radians per millenium. */
+  private final double[][] C = new double[NUM_COORDS][];
+  /** The index of the first term for each power of τ; the final item is one past the last term. */
+  private final int[][] start = new int[NUM_COORDS][];
+  /** Radians or AU. */
+  private final double[] errorBound = new double[NUM_COORDS];
+  
+  /** Used only when truncating. */
+  private PlanetSeries() {}
+
+  private void compile(Coord coord, Map<Param, double[]> periodicTerms) {
+    int maxPower = -1;
+    int count = 0;
+    for(Param param : paramsFor(coord)) {
+      double[] terms = periodicTerms.get(param);
+      if (terms != null) { //not all of these will be in the data!
+        maxPower = Math.max(maxPower, param.power());
+        count = count + terms.length / PlanetPositionDataLoader.NUM_COLUMNS;
+      }
+    }
+    int idx = coord.ordinal();
+    A[idx] = new double[count];
+    B[idx] = new double[count];
+    C[idx] = new double[count];
+    start[idx] = new int[maxPower + 2];
+    int i = 0;
+    for(int power = 0; power <= maxPower; ++power) {
+      start[idx][power] = i;
+      double[] terms = periodicTerms.get(Param.valueOf(coord.name() + power));
+      if (terms != null) {
+        for(int row = 0; row < terms.length; row += PlanetPositionDataLoader.NUM_COLUMNS) {
+          A[idx][i] = terms[row];
+          B[idx][i] = terms[row + 1];
+          C[idx][i] = terms[row + 2];
+          ++i;
+        }
+      }
+    }
+    start[idx][maxPower + 1] = i;
+  }
+
+  /** Copy the terms that are kept from this series into the target series. */
+  private void truncate(Coord coord, double tolerance, double τMax, PlanetSeries target) {
+    int idx = coord.ordinal();
+    int[] start = this.start[idx];
+    int numTerms = A[idx].length;
+    
+    //the worst-case contribution of each term over the time span
+    double[] worstCase = new double[numTerms];
+    Integer[] rank = new Integer[numTerms];
+    for(int power = 0; power < start.length - 1; ++power) {
+      double factor = Math.pow(τMax, power);
+      for(int i = start[power]; i < start[power + 1]; ++i) {
+        worstCase[i] = Math.abs(A[idx][i]) * factor;
+        rank[i] = i;
+      }
+    }
+    Arrays.sort(rank, Comparator.comparingDouble(i -> worstCase[i]));
+    
+    //drop the smallest terms, until the tolerance is exhausted
+    boolean[] dropped = new boolean[numTerms];
+    double error = 0.0;
+    int numDropped = 0;
+    for(Integer i : rank) {
+      if (error + worstCase[i] > tolerance) {
+        break;
+      }
+      error = error + worstCase[i];
+      dropped[i] = true;
+      ++numDropped;
+    }
+    
+    //retain the original order of the terms that are kept
+    int numKept = numTerms - numDropped;
+    target.A[idx] = new double[numKept];
+    target.B[idx] = new double[numKept];
+    target.C[idx] = new double[numKept];
+    target.start[idx] = new int[start.length];
+    int j = 0;
+    for(int power = 0; power < start.length - 1; ++power) {
+      target.start[idx][power] = j;
+      for(int i = start[power]; i < start[power + 1]; ++i) {
+        if (!dropped[i]) {
+          target.A[idx][j] = A[idx][i];
+          target.B[idx][j] = B[idx][i];
+          target.C[idx][j] = C[idx][i];
+          ++j;
+        }
+      }
+    }
+    target.start[idx][start.length - 1] = j;
+    target.errorBound[idx] = errorBound[idx] + error;
+  }
+  
+  private static List<Param> paramsFor(Coord coord) {
+    List<Param> result = new ArrayList<>();
+    for(Param param : Param.values()) {
+      if (param.name().startsWith(coord.name())) {
+        result.add(param);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,28 @@
+package astropdf.astro.planets;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ The compiled VSOP87D series for each planet, shared by the whole process.
+ 
+ <P>Each data file is parsed only once per JVM, the first time its planet is requested. 
+ The series are immutable, so a single copy is shared by all {@link PlanetPosition} and {@link SolarPosition} objects.
+ This class is thread-safe.
+*/
+final class PlanetSeriesRegistry {
+
+  /** Return the series for the given planet, parsing its data file if needed. */
+  static PlanetSeries seriesFor(Planet planet) {
+    return SERIES.computeIfAbsent(planet, PlanetSeriesRegistry::load);
+  }
+  
+  // PRIVATE 
+  
+  private static final Map<Planet, PlanetSeries> SERIES = new ConcurrentHashMap<>();
+  
+  private static PlanetSeries load(Planet planet) {
+    PlanetPositionDataLoader loader = new PlanetPositionDataLoader();
+    return new PlanetSeries(loader.periodicTermsForThe(planet));
+  }
+}
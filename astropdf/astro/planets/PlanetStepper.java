@@ -0,0 +1,49 @@
+package astropdf.astro.planets;
+
+import static astropdf.math.Maths.in2pi;
+
+import astropdf.astro.coords.Coord;
+import astropdf.astro.coords.LBR;
+import astropdf.astro.time.AstroUtil;
+
+/**
+ The heliocentric coordinates of a planet at evenly spaced times, such as every hour or every day.
+ 
+ <P>This is much faster than calling {@link PlanetPosition#lbr(double)} for each time, since nearly 
+ all calls to <code>cos</code> are replaced by a few multiplications. 
+ The result agrees with {@link PlanetPosition#lbr(double)} to within rounding error.
+ 
+ <P>Get an instance from {@link PlanetPosition#stepper(double, double)}. Not thread-safe.
+*/
+public final class PlanetStepper {
+
+  /** The time (JDE) of the result that will be returned by the next call to {@link #next()}. */
+  public double jde() {
+    return jdeStart + numSteps * step;
+  }
+  
+  /** Return the heliocentric coordinates at {@link #jde()}, and then move to the next time. */
+  public LBR next() {
+    LBR result = new LBR();
+    result.L = in2pi(stepper.value(Coord.L));
+    result.B = stepper.value(Coord.B);
+    result.R = stepper.value(Coord.R);
+    stepper.step();
+    ++numSteps;
+    return result;
+  }
+  
+  // PRIVATE 
+  
+  private PlanetSeries.Stepper stepper;
+  private double jdeStart;
+  private double step;
+  private long numSteps;
+  
+  /** @param step in days. */
+  PlanetStepper(PlanetSeries series, double jdeStart, double step) {
+    this.jdeStart = jdeStart;
+    this.step = step;
+    this.stepper = series.new Stepper(AstroUtil.julianMilleniaSinceJ2000(jdeStart), step / AstroUtil.DAYS_PER_JULIAN_MILLENIUM);
+  }
+}
@@ -7,6 +7,7 @@ import static java.lang.Math.sin;
 import astropdf.astro.coords.Position;
 import astropdf.astro.precession.LongTermPrecession;
 import astropdf.astro.precession.Nutation;
+import astropdf.astro.precession.PrecessionCache;
 import astropdf.astro.time.AstroUtil;
 import astropdf.astro.time.GregorianCal;
 import astropdf.math.Maths;
@@ -40,19 +41,32 @@ public final class SolarPosition {
     LongTermPrecession precession = new LongTermPrecession();
     double ε = precession.obliquity(jde); //rads
     double λ = apparentλ(jde);
-    Position pos = new Position();
-    pos.α = Maths.atan3(sin(λ) * cos(ε), cos(λ));
-    pos.δ = asin(sin(ε) * sin(λ));
-    return pos;
+    return position(λ, ε);
+  }
+
+  /** As in {@link #apparentPosition(double)}, but with the obliquity interpolated from a cache that covers the given time. */
+  public Position apparentPosition(double jde, PrecessionCache precession) {
+    return position(apparentλ(jde), precession.obliquity(jde));
+  }
+
+  /** As in {@link #apparentPosition(double)}, but using the Earth's position, obliquity, and nutation already computed for the given time. */
+  public Position apparentPosition(EpochContext context) {
+    return position(apparentλ(context), context.obliquity());
   }
 
   /** Radians. With nutation and aberration. */
   public double apparentλ(double jde) {
     double λ = geometricλ(jde);
-    Nutation nutation = new Nutation(jde);
+    Nutation nutation = Nutation.at(jde);
     return Maths.in2pi(λ + nutation.Δψ() + aberration()); 
   }
   
+  /** As in {@link #apparentλ(double)}, but using the Earth's position and nutation already computed for the given time. */
+  public double apparentλ(EpochContext context) {
+    double λ = Maths.in2pi(context.earth().L + Math.PI);
+    return Maths.in2pi(λ + context.Δψ() + aberration()); 
+  }
+  
   /** Radians. */
   public double geometricλ(double jde) {
     double L = meanLEarth(jde);
@@ -60,6 +74,14 @@ public final class SolarPosition {
   }
   
   private PlanetPosition earth;
+  
+  /** The latitude of the Sun is taken as 0. */
+  private static Position position(double λ, double ε) {
+    Position pos = new Position();
+    pos.α = Maths.atan3(sin(λ) * cos(ε), cos(λ));
+    pos.δ = asin(sin(ε) * sin(λ));
+    return pos;
+  }
 
   /** Mean longitude L of the Earth, in radians. Heliocentric. The core calculation. */
   private double meanLEarth(double jd) {
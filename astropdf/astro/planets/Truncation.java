@@ -0,0 +1,69 @@
+package astropdf.astro.planets;
+
+import astropdf.astro.time.AstroUtil;
+
+/**
+ The accuracy requested of the VSOP87D series over a given span of time.
+ 
+ <P>Terms are dropped from the series by amplitude, smallest first, as long as the error bound stays within 
+ the requested tolerance. The bound is rigorous: for each dropped term, the contribution to the sum 
+ is at most |A|·|τ|<sup>k</sup>, where k is the power of τ for the term, and |τ| is taken at the 
+ end of the time span farthest from J2000.
+ 
+ <P>The tolerances apply to the heliocentric coordinates L, B, and R. 
+ The error in the geocentric position is larger when the planet is near the Earth: for Venus near 
+ inferior conjunction, the angular error can be about 3.6 times larger. 
+ 
+ <P>This project needs only about 1 arcminute of accuracy, while the full series is good to about 1 arcsecond.
+*/
+public final class Truncation {
+
+  /**
+   Constructor.
+   @param angularTolerance the maximum error in L and B, in radians.
+   @param radialTolerance the maximum error in R, in AU.
+   @param jdStart the start of the time span in which the truncated series will be used.
+   @param jdEnd the end of the time span in which the truncated series will be used.
+  */
+  public Truncation(double angularTolerance, double radialTolerance, double jdStart, double jdEnd) {
+    if (angularTolerance < 0 || radialTolerance < 0) {
+      throw new IllegalArgumentException("Tolerances cannot be negative: " + angularTolerance + " " + radialTolerance);
+    }
+    if (jdStart > jdEnd) {
+      throw new IllegalArgumentException("Start of time span comes after the end: " + jdStart + " " + jdEnd);
+    }
+    this.angularTolerance = angularTolerance;
+    this.radialTolerance = radialTolerance;
+    this.jdStart = jdStart;
+    this.jdEnd = jdEnd;
+  }
+  
+  /** The maximum error in L and B, in radians. */
+  public double angularTolerance() { return angularTolerance; }
+  
+  /** The maximum error in R, in AU. */
+  public double radialTolerance() { return radialTolerance; }
+  
+  public double jdStart() { return jdStart; }
+  
+  public double jdEnd() { return jdEnd; }
+  
+  /** Debugging only. */
+  @Override public String toString() {
+    return "angular:" + angularTolerance + " radial:" + radialTolerance + " jd:" + jdStart + ".." + jdEnd;
+  }
+  
+  /** The largest magnitude of τ (Julian millenia from J2000) in the time span. */
+  double τMax() {
+    double start = Math.abs(AstroUtil.julianMilleniaSinceJ2000(jdStart));
+    double end = Math.abs(AstroUtil.julianMilleniaSinceJ2000(jdEnd));
+    return Math.max(start, end);
+  }
+  
+  // PRIVATE
+  
+  private double angularTolerance;
+  private double radialTolerance;
+  private double jdStart;
+  private double jdEnd;
+}
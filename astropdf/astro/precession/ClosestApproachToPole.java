@@ -3,17 +3,22 @@ package astropdf.astro.precession;
 import static astropdf.util.LogUtil.log;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoubleUnaryOperator;
 
-import astropdf.astro.coords.Position;
 import astropdf.astro.star.ProperMotion;
 import astropdf.astro.star.Star;
 import astropdf.astro.star.StarCatalog;
 import astropdf.astro.time.AstroUtil;
-import astropdf.astro.time.GregorianCal;
 import astropdf.config.Config;
 import astropdf.config.ConfigFromFile;
-import astropdf.math.Maths;
+import astropdf.math.Minimizer;
 
 /** 
  The closest approach of a star to the equatorial pole in a given interval centered on the year 0.
@@ -73,12 +78,49 @@ The results for the interval of -10,000..+10000, and the same stars as above:
 σ Pup -14090 +0°23'6.263''
 </pre>
 
-<P>This implementation only cycles through each year in the given range, as of Jan 1. 
-A more accurate method would then interpolate/search for a more precise date. 
+<P>The search is in two stages. First, a coarse scan every {@value #SCAN_STEP_YEARS} years, using the 
+tabulated path of the pole ({@link PoleTrajectory}). Then, near each local minimum found by the scan, a refinement 
+using Brent's method ({@link Minimizer}), to a small fraction of a day. 
+The result is the moment of closest approach, not just the year.
+
+<P>{@link #surveyTheWholeCatalog(Pole)} does the same for every star in the catalog, in parallel.
 */
 public final class ClosestApproachToPole {
 
   public static final int MAX_YEAR = 15000;
+  
+  /** The step of the coarse scan - {@value} years. */
+  public static final int SCAN_STEP_YEARS = 100;
+
+  /** The celestial poles. */
+  public enum Pole {
+    NORTH(1), SOUTH(-1);
+    private Pole(int sign) { this.sign = sign; }
+    private int sign;
+  }
+  
+  /** The closest approach of a star to a pole. */
+  public static final class Closest {
+    public String name;
+    public String properName;
+    public Pole pole;
+    /** The moment of the closest approach. */
+    public double jd;
+    /** Radians. The angle between the star and the pole. */
+    public double separation;
+    /** 
+     True if the separation is smallest at the start or end of the span of the search. 
+     The star is then still approaching the pole at that edge, so its true closest approach is outside the span. 
+    */
+    public boolean atEdge;
+    /** The year, with a fraction, as Julian years from J2000. Astronomical numbering: the year 0 is 1 BC. */
+    public double year() {
+      return 2000.0 + (jd - AstroUtil.J2000) / AstroUtil.DAYS_PER_JULIAN_YEAR;
+    }
+    public String separationString() {
+      return AstroUtil.radsToDegreeString(separation);
+    }
+  }
 
   /** Run the script. */
   public static void main(String... args) throws IOException {
@@ -86,80 +128,250 @@ public final class ClosestApproachToPole {
     String[] STAR_NAMES_N = {"α Lyr", "α Cyg", "α UMi", "β UMi", "α Cep", "λ Cep", "α Dra", "τ Her"};
     String[] STAR_NAMES_S = {"α Dor", "γ Dor", "α Eri", "γ Cha", "α Car", "ω Car", "δ Vel", "γ2 Vel", "σ Pup"};
     
-    log("Finding years of closest approach for stars near the pole, in the range -" + MAX_YEAR + "..+" + MAX_YEAR);
+    log("Finding the closest approach to the pole for stars near the pole, in the range -" + MAX_YEAR + "..+" + MAX_YEAR);
     
     ClosestApproachToPole approach = new ClosestApproachToPole(MAX_YEAR);
     //choose _N or _S here:
     for (String starName : STAR_NAMES_N) {
       Closest closest = approach.findTheClosestApproachToThePole(starName);
       if (closest != null) {
-        log(starName + " " + closest.year + " " + closest.separation() + " " + closest.properName);
+        log(starName + " " + Math.round(closest.year()) + (closest.atEdge ? " (edge of the span)" : "") + " " + closest.separationString() + " " + closest.properName);
       }
     }
     log("Star / year / separation.");
+    
+    for(Pole pole : Pole.values()) {
+      long start = System.nanoTime();
+      List<Closest> survey = approach.surveyTheWholeCatalog(pole);
+      log("Whole catalog, " + pole + " pole: " + survey.size() + " stars in " + (System.nanoTime() - start) / 1_000_000 + " ms. The closest:");
+      for(Closest closest : survey.subList(0, 10)) {
+        log("  " + closest.name + " " + Math.round(closest.year()) + " " + closest.separationString() + " " + closest.properName);
+      }
+    }
     log("Done.");
   }
   
+  /** 
+   Read the config file, and map the path of the pole from the file {@value PoleTrajectory#FILE_NAME} in the 
+   configured output directory. If that file doesn't exist yet, then the path is fitted and saved there, for the next run. 
+  */
   public ClosestApproachToPole(int maxYear) throws IOException {
+    this(maxYear, new ConfigFromFile().init());
+  }
+  
+  /** As in {@link #ClosestApproachToPole(int)}, but with a config that has already been read. */
+  public ClosestApproachToPole(int maxYear, Config config) throws IOException {
+    this(maxYear, config, PoleTrajectory.mapOrFit(Path.of(config.outputDir(), PoleTrajectory.FILE_NAME)));
+  }
+  
+  /** With the path of the pole already fitted, or mapped from a file. */
+  public ClosestApproachToPole(int maxYear, Config config, PoleTrajectory poles) throws IOException {
     if (maxYear > 200000) {
       throw new IllegalArgumentException("Max year cannot exceed 200,000.");
     }
-    this.maxYear = maxYear;
-    Config config = new ConfigFromFile().init();
     this.starCatalog = new StarCatalog(config);
     Double NO_PRECESSION = null;
     starCatalog.generateIntermediateStarCatalog(NO_PRECESSION);
+    this.poles = poles;
+    //the span is centered on the year 0, but can't go past the span of the precession model
+    this.jdStart = Math.max(jdFor(-maxYear), poles.jdStart());
+    this.jdEnd = Math.min(jdFor(maxYear), poles.jdEnd());
   }
   
-  /** Scan for the year of closest approach, in the given range. */
+  /** 
+   Find the closest approach of the given star to either pole, in the given range of years. 
+   Returns null if the star isn't found. 
+  */
   public Closest findTheClosestApproachToThePole(String name) {
     Closest result = null;
     Optional<Star> star = starCatalog.findByName(name);
     if (star.isPresent()) {
-      result = findTheClosestApproachToThePole(star.get());
+      Closest north = findTheClosestApproachToThePole(star.get(), Pole.NORTH);
+      Closest south = findTheClosestApproachToThePole(star.get(), Pole.SOUTH);
+      result = north.separation <= south.separation ? north : south;
     }
     else {
       log("Can't find the star named '" + name + "'.");
     }
     return result;
   }
+
+  /** Find the closest approach of the given star to the given pole, in the given range of years. */
+  public Closest findTheClosestApproachToThePole(Star star, Pole pole) {
+    StarMotion motion = new StarMotion(star);
+    double[] pole0 = new double[3];
+    double[] dir = new double[3];
+    //minimize the negative of the cosine of the separation
+    DoubleUnaryOperator f = jd -> -pole.sign * dot(motion.direction(jd, dir), poles.equatorialNorthPole(jd, pole0));
+    
+    //coarse scan
+    int n = (int)Math.ceil((jdEnd - jdStart) / SCAN_STEP_DAYS) + 1;
+    double[] t = new double[n];
+    double[] val = new double[n];
+    for(int i = 0; i < n; ++i) {
+      t[i] = Math.min(jdStart + i * SCAN_STEP_DAYS, jdEnd);
+      val[i] = f.applyAsDouble(t[i]);
+    }
+    
+    //refine each local minimum of the scan
+    double bestJd = t[0];
+    double bestVal = Double.MAX_VALUE;
+    for(int i = 0; i < n; ++i) {
+      boolean isLocalMin = (i == 0 || val[i] <= val[i - 1]) && (i == n - 1 || val[i] <= val[i + 1]);
+      if (isLocalMin) {
+        double a = t[Math.max(i - 1, 0)];
+        double b = t[Math.min(i + 1, n - 1)];
+        double jd = Minimizer.brent(f, a, b, TOLERANCE_DAYS);
+        double v = f.applyAsDouble(jd);
+        if (val[i] < v) {
+          jd = t[i]; //at the very end of the span
+          v = val[i];
+        }
+        if (v < bestVal) {
+          bestVal = v;
+          bestJd = jd;
+        }
+      }
+    }
+    
+    Closest result = new Closest();
+    result.name = star.NAME;
+    result.properName = star.PROPER_NAME;
+    result.pole = pole;
+    result.jd = bestJd;
+    result.separation = Math.acos(Math.max(-1.0, Math.min(1.0, -bestVal)));
+    result.atEdge = bestJd - jdStart <= EDGE_DAYS || jdEnd - bestJd <= EDGE_DAYS;
+    return result;
+  }
+  
+  /** 
+   The closest approach of every star in the catalog to the given pole, sorted by separation, smallest first.
+   The stars are processed in parallel, in the common fork-join pool. 
+  */
+  public List<Closest> surveyTheWholeCatalog(Pole pole) {
+    List<Closest> result = survey(pole, ForkJoinPool.commonPool());
+    result.sort(Comparator.comparingDouble(closest -> closest.separation));
+    return result;
+  }
+  
+  /** 
+   The closest approach of every star in the catalog to the given pole, in the same order as {@link #stars()}.
+   The catalog is split into batches, which are processed in parallel in the given pool.
+  */
+  List<Closest> survey(Pole pole, ForkJoinPool pool) {
+    List<Star> stars = starCatalog.all();
+    return pool.invoke(new Batch(stars, pole, 0, stars.size()));
+  }
+  
+  /** All of the stars in the catalog. */
+  List<Star> stars() {
+    return starCatalog.all();
+  }
+  
+  /** The tabulated path of the pole, used for the search. */
+  PoleTrajectory poles() {
+    return poles;
+  }
+  
+  /** The start and end of the span of the search. */
+  double jdStart() { return jdStart; }
+  double jdEnd() { return jdEnd; }
+  
+  /** Unit vector for the direction of the star at the given time, in J2000 coords. */
+  double[] directionAt(Star star, double jd) {
+    return new StarMotion(star).direction(jd, new double[3]);
+  }
+  
+  // PRIVATE
+  
+  private static final double SCAN_STEP_DAYS = SCAN_STEP_YEARS * AstroUtil.DAYS_PER_JULIAN_YEAR;
+  private static final double TOLERANCE_DAYS = 0.01;
+  /** A minimum this close to the start or end of the span is taken to be at the edge. A few times the tolerance of the refinement. */
+  private static final double EDGE_DAYS = 10 * TOLERANCE_DAYS;
+  /** The number of stars in each batch, below which a batch isn't split further. */
+  private static final int BATCH_SIZE = 64;
   
-  private int maxYear;
   private StarCatalog starCatalog;
+  private PoleTrajectory poles;
+  private double jdStart;
+  private double jdEnd;
   
-  private Closest findTheClosestApproachToThePole(Star star) {
-    Closest result = new Closest();
-    LongTermPrecession precession = new LongTermPrecession();
-    double dec = 0.0;
-    int year = 0;
-    for (int y = -maxYear; y <= maxYear; y = y + 1) {
-      Double jd = GregorianCal.jdForGreenwich(y, 1, 1.0);
-      
-      //always apply proper motion before precession
-      ProperMotion pm = new ProperMotion(ProperMotion.J1991_25, jd);
-      //the proper motion code changes the state of the star in place; 
-      //we need to preserve the state of the incoming star object
-      Star copyWithPM = star.copy();
-      pm.applyTo(copyWithPM);
-      
-      Position pos = precession.apply(copyWithPM.position(), jd);
-      if (Math.abs(pos.δ) > dec) {
-        dec = Math.abs(pos.δ);
-        year = y;
+  /** Jan 1.5 of the given year, in the Julian calendar's count of days. Astronomical numbering. */
+  static double jdFor(int year) {
+    return AstroUtil.J2000 + (year - 2000) * AstroUtil.DAYS_PER_JULIAN_YEAR;
+  }
+  
+  static double dot(double[] a, double[] b) {
+    return a[0]*b[0] + a[1]*b[1] + a[2]*b[2];
+  }
+  
+  /** A batch of stars, split in two until it's small enough to process directly. */
+  private final class Batch extends RecursiveTask<List<Closest>> {
+    Batch(List<Star> stars, Pole pole, int from, int to){
+      this.stars = stars;
+      this.pole = pole;
+      this.from = from;
+      this.to = to;
+    }
+    @Override protected List<Closest> compute() {
+      List<Closest> result = new ArrayList<>();
+      if (to - from <= BATCH_SIZE) {
+        for(int i = from; i < to; ++i) {
+          result.add(findTheClosestApproachToThePole(stars.get(i), pole));
+        }
+      }
+      else {
+        int middle = (from + to) >>> 1;
+        Batch first = new Batch(stars, pole, from, middle);
+        first.fork();
+        List<Closest> second = new Batch(stars, pole, middle, to).compute();
+        result.addAll(first.join());
+        result.addAll(second);
       }
+      return result;
     }
-    result.declination = dec;
-    result.year = year;
-    result.properName = star.PROPER_NAME;
-    return result;
+    private static final long serialVersionUID = 1L;
+    private List<Star> stars;
+    private Pole pole;
+    private int from;
+    private int to;
   }
   
-  private static final class Closest {
-    String properName;
-    int year;
-    double declination; //absolute value!
-    String separation() {
-      return AstroUtil.radsToDegreeString(Maths.HALF_PI - declination);
+  /** 
+   The direction of a star at any time, in J2000 coords. 
+   Uses the star's space motion if it's available, which is a simple straight line; otherwise, 2D proper motion. 
+  */
+  private static final class StarMotion {
+    StarMotion(Star star){
+      this.star = star;
+      if (ProperMotion.hasSpaceMotion(star)) {
+        motion = ProperMotion.spaceMotion(star);
+      }
+    }
+    /** @param result receives a unit vector. It's also the return value. */
+    double[] direction(double jd, double[] result) {
+      if (motion != null) {
+        double days = jd - ProperMotion.J1991_25;
+        double x = motion[0] + motion[3] * days;
+        double y = motion[1] + motion[4] * days;
+        double z = motion[2] + motion[5] * days;
+        double r = Math.sqrt(x*x + y*y + z*z);
+        result[0] = x / r;
+        result[1] = y / r;
+        result[2] = z / r;
+      }
+      else {
+        //the proper motion code changes the state of the star in place; 
+        //we need to preserve the state of the incoming star object
+        Star copy = star.copy();
+        new ProperMotion(ProperMotion.J1991_25, jd).applyTo(copy);
+        result[0] = Math.cos(copy.DEC) * Math.cos(copy.RA);
+        result[1] = Math.cos(copy.DEC) * Math.sin(copy.RA);
+        result[2] = Math.sin(copy.DEC);
+      }
+      return result;
     }
+    private Star star;
+    private double[] motion;
   }
 }
@@ -0,0 +1,199 @@
+package astropdf.astro.precession;
+
+import static astropdf.astro.time.AstroUtil.radsToDegreeString;
+import static astropdf.astro.time.AstroUtil.radsToTimeString;
+import static java.lang.Math.asin;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+import astropdf.astro.coords.Position;
+import astropdf.astro.time.GregorianCal;
+import astropdf.math.Maths;
+import astropdf.util.LogUtil;
+
+/**
+ A single rotation from the J2000 mean equator and equinox, to the mean or true equator and equinox of a given date.
+
+ <P>The rotations for precession and nutation are multiplied together only once, when the object is built.
+ The result is then applied to any number of positions, with 9 multiplications each.
+ This is much faster than building the rotations again for each star.
+
+<pre>
+ FrameTransform meanOfDate = FrameTransform.builder(jd).precession().build();
+ FrameTransform trueOfDate = FrameTransform.builder(jd).precession().nutation().build();
+</pre>
+
+ <P>Proper motion isn't a rotation, so it's not part of this class. It's applied to each star before this transform.
+
+ <P>This class is immutable, and can be shared between threads.
+*/
+public final class FrameTransform {
+
+  /** Start building a transform to the given date. With nothing added, the transform does nothing. */
+  public static Builder builder(double jd) {
+    return new Builder(jd);
+  }
+
+  /** Builds a {@link FrameTransform}. The rotations are applied in the order in which they're added. */
+  public static final class Builder {
+
+    /** Precession from J2000 to the mean equator and equinox of date, as in {@link LongTermPrecession}. */
+    public Builder precession() {
+      return then(new LongTermPrecession().data(jd).rotation);
+    }
+
+    /** As in {@link #precession()}, but interpolated from a cache that covers the date. */
+    public Builder precession(PrecessionCache cache) {
+      return then(cache.rotation(jd, new double[9]));
+    }
+
+    /**
+     Nutation, from the mean to the true equator and equinox of date, as in {@link Nutation}.
+     Usually added after {@link #precession()}.
+    */
+    public Builder nutation() {
+      Nutation nutation = Nutation.at(jd);
+      double εA = new LongTermPrecession().obliquity(jd);
+      double ε = εA + nutation.Δε();
+      //R1(-ε) · R3(-Δψ) · R1(εA)
+      double[] result = times(rotationX(-ε), times(rotationZ(-nutation.Δψ()), rotationX(εA)));
+      return then(result);
+    }
+
+    /** Finish. */
+    public FrameTransform build() {
+      return new FrameTransform(jd, matrix.clone());
+    }
+
+    private double jd;
+    private double[] matrix = IDENTITY.clone();
+
+    private Builder(double jd) {
+      this.jd = jd;
+    }
+
+    /** Apply the given rotation after the existing ones. */
+    private Builder then(double[] rotation) {
+      matrix = times(rotation, matrix);
+      return this;
+    }
+  }
+
+  /** The date of the target frame. */
+  public double jd() {
+    return jd;
+  }
+
+  /** The rotation matrix, in row-major order. Returns a new array. */
+  public double[] matrix() {
+    return m.clone();
+  }
+
+  /**
+   Rotate unit vectors (or any vectors), in place.
+   @param x the x-coordinates, replaced by the rotated x-coordinates.
+   @param y the y-coordinates, replaced by the rotated y-coordinates. Same length as x.
+   @param z the z-coordinates, replaced by the rotated z-coordinates. Same length as x.
+  */
+  public void apply(double[] x, double[] y, double[] z) {
+    if (y.length != x.length || z.length != x.length) {
+      throw new IllegalArgumentException("Arrays don't have the same length: " + x.length + " " + y.length + " " + z.length);
+    }
+    double m0 = m[0], m1 = m[1], m2 = m[2];
+    double m3 = m[3], m4 = m[4], m5 = m[5];
+    double m6 = m[6], m7 = m[7], m8 = m[8];
+    for(int i = 0; i < x.length; ++i) {
+      double xi = x[i];
+      double yi = y[i];
+      double zi = z[i];
+      x[i] = m0*xi + m1*yi + m2*zi;
+      y[i] = m3*xi + m4*yi + m5*zi;
+      z[i] = m6*xi + m7*yi + m8*zi;
+    }
+  }
+
+  /** Rotate a single position. */
+  public Position apply(Position pos) {
+    return LongTermPrecession.apply(pos, m);
+  }
+
+  // PRIVATE
+
+  private static final double[] IDENTITY = {1, 0, 0, 0, 1, 0, 0, 0, 1};
+
+  private final double jd;
+  private final double[] m;
+
+  private FrameTransform(double jd, double[] matrix) {
+    this.jd = jd;
+    this.m = matrix;
+  }
+
+  /** The product of two 3x3 matrices, in row-major order. */
+  private static double[] times(double[] a, double[] b) {
+    double[] result = new double[9];
+    for(int row = 0; row < 3; ++row) {
+      for(int col = 0; col < 3; ++col) {
+        result[row*3 + col] = a[row*3]*b[col] + a[row*3 + 1]*b[3 + col] + a[row*3 + 2]*b[6 + col];
+      }
+    }
+    return result;
+  }
+
+  /** Rotation of the axes about the x-axis, by the given angle in radians. */
+  private static double[] rotationX(double φ) {
+    double c = cos(φ);
+    double s = sin(φ);
+    return new double[] {
+      1,  0, 0,
+      0,  c, s,
+      0, -s, c
+    };
+  }
+
+  /** Rotation of the axes about the z-axis, by the given angle in radians. */
+  private static double[] rotationZ(double φ) {
+    double c = cos(φ);
+    double s = sin(φ);
+    return new double[] {
+       c, s, 0,
+      -s, c, 0,
+       0, 0, 1
+    };
+  }
+
+  /** Informal test harness. */
+  public static void main(String... args) {
+    //theta Persei, Meeus example 21.b
+    Position start = new Position(Maths.degToRads(41.054063), Maths.degToRads(49.227750));
+    double jd = GregorianCal.jdForGreenwich(2028, 11, 13.19);
+    FrameTransform meanOfDate = FrameTransform.builder(jd).precession().build();
+    FrameTransform trueOfDate = FrameTransform.builder(jd).precession().nutation().build();
+    log("Mean of date", meanOfDate.apply(start));
+    log("Direct precession", new LongTermPrecession().apply(start, jd));
+    log("True of date", trueOfDate.apply(start));
+
+    int n = 100_000;
+    double[] x = new double[n];
+    double[] y = new double[n];
+    double[] z = new double[n];
+    for(int i = 0; i < n; ++i) {
+      double α = Maths.TWO_PI * i / n;
+      double δ = Math.asin(2.0 * ((i * 7919) % n) / n - 1.0);
+      x[i] = cos(δ) * cos(α);
+      y[i] = cos(δ) * sin(α);
+      z[i] = sin(δ);
+    }
+    for(int run = 0; run < 5; ++run) {
+      long begin = System.nanoTime();
+      trueOfDate.apply(x, y, z);
+      LogUtil.log("Rotated " + n + " vectors in " + (System.nanoTime() - begin) / 1000 + " µs");
+    }
+    double norm = x[0]*x[0] + y[0]*y[0] + z[0]*z[0];
+    LogUtil.log("Still a unit vector: " + norm + " " + Math.toDegrees(asin(z[0])));
+  }
+
+  private static void log(String label, Position pos) {
+    LogUtil.log(label + ": ra " + radsToTimeString(pos.α) + " dec " + radsToDegreeString(pos.δ));
+  }
+}
@@ -2,6 +2,9 @@ package astropdf.astro.precession;
 
 import static astropdf.astro.time.AstroUtil.radsToDegreeString;
 import static astropdf.astro.time.AstroUtil.radsToTimeString;
+import static java.lang.Math.asin;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
 
 import astropdf.astro.coords.Position;
 import astropdf.astro.star.Star;
@@ -37,12 +40,55 @@ import astropdf.util.LogUtil;
 */
 public final class LongTermPrecession {
   
+  /** 
+   The result of {@link #data(double)}: the precession from J2000 to a given date, computed in a single pass.
+   The periodic terms for all parameters are evaluated together, and no vector or matrix objects are created.
+  */
+  public static final class Data {
+    /** The rotation matrix from J2000 to the mean equator and equinox of date, in row-major order. The same as {@link LongTermPrecession#rotationMatrix(double)}. */
+    public double[] rotation = new double[9];
+    /** The obliquity ε<sub>A</sub>, in radians. */
+    public double obliquity;
+    /** The general precession p<sub>A</sub>, in arcseconds. */
+    public double generalPrecession;
+    /** The parameters for the ecliptic pole, P<sub>A</sub> and Q<sub>A</sub>, in radians. */
+    public double P;
+    public double Q;
+    /** The parameters for the equatorial pole, X<sub>A</sub> and Y<sub>A</sub>, in radians. */
+    public double X;
+    public double Y;
+  }
+  
+  /** All of the precession quantities for the given date, in a single pass. */
+  public Data data(double jd) {
+    Data result = new Data();
+    double T = AstroUtil.julianCenturiesSinceJ2000(jd);
+    double[] periodic = new double[NUM_PARAMS];
+    PrecessionSeries.instance().periodicTerms(T, periodic);
+    result.P = Maths.arcsecToRads(P(T, periodic));
+    result.Q = Maths.arcsecToRads(Q(T, periodic));
+    result.X = Maths.arcsecToRads(X(T, periodic));
+    result.Y = Maths.arcsecToRads(Y(T, periodic));
+    result.obliquity = Maths.arcsecToRads(epsilon(T, periodic));
+    result.generalPrecession = p(T, periodic);
+    rotation(result.P, result.Q, result.X, result.Y, result.rotation);
+    return result;
+  }
+  
   /** Precess from a J2000 position to the target jd. */
   public Position apply(Position pos, double jd) {
-    Vector before = XYZ.xyzFrom(pos);
-    Matrix rot = rotationMatrix(jd);
-    Vector after = rot.times(before);
-    return XYZ.positionWithUnitDistance(after);
+    return apply(pos, data(jd).rotation);
+  }
+  
+  /** Apply the given rotation matrix (row-major) to a position. */
+  static Position apply(Position pos, double[] r) {
+    double x = cos(pos.δ) * cos(pos.α);
+    double y = cos(pos.δ) * sin(pos.α);
+    double z = sin(pos.δ);
+    double xp = r[0]*x + r[1]*y + r[2]*z;
+    double yp = r[3]*x + r[4]*y + r[5]*z;
+    double zp = r[6]*x + r[7]*y + r[8]*z;
+    return new Position(Maths.atan3(yp, xp), asin(zp));
   }
   
   /** 
@@ -52,13 +98,15 @@ public final class LongTermPrecession {
    See <a href='https://ui.adsabs.harvard.edu/abs/1977A%26A....58....1L/abstract'>Lieske et al 1977</a>. 
   */
   public Matrix rotationMatrix(double jd) {
-    Vector k = eclipticNorthPole(jd);
-    Vector n = equatorialNorthPole(jd);
-    Vector w = n.cross(k).unit();
+    return matrix(data(jd).rotation);
+  }
+  
+  /** Build a matrix from its elements in row-major order. */
+  static Matrix matrix(double[] r) {
     return new Matrix(
-      w,
-      n.cross(w),
-      n
+      new Vector(r[0], r[1], r[2]),
+      new Vector(r[3], r[4], r[5]),
+      new Vector(r[6], r[7], r[8])
     );
   }
   
@@ -69,18 +117,12 @@ public final class LongTermPrecession {
   */
   public Vector eclipticNorthPole(double jd){
     double T = AstroUtil.julianCenturiesSinceJ2000(jd);
-    double P = Maths.arcsecToRads(P(T)); //rads
-    double Q = Maths.arcsecToRads(Q(T)); //rads
-    
-    double Z = Math.sqrt(Math.max(1 - P*P - Q*Q, 0));
-    double S = Math.sin(ε0);
-    double C = Math.cos(ε0);
-    
-    return new Vector(
-      P, 
-      -Q*C - Z*S, 
-      -Q*S + Z*C
-    );
+    double[] periodic = new double[NUM_PARAMS];
+    PrecessionSeries.instance().periodicTerms(Param.P, T, periodic); //P and Q together
+    double P = Maths.arcsecToRads(P(T, periodic)); //rads
+    double Q = Maths.arcsecToRads(Q(T, periodic)); //rads
+    double[] k = eclipticPole(P, Q);
+    return new Vector(k[0], k[1], k[2]);
   }
   
   /** Return the position of the north ecliptic pole for the given date, using J2000 mean equator and equinox. */
@@ -97,16 +139,12 @@ public final class LongTermPrecession {
   */
   Vector equatorialNorthPole(double jd){
     double T = AstroUtil.julianCenturiesSinceJ2000(jd);
-    double X = Maths.arcsecToRads(X(T)); //rads
-    double Y = Maths.arcsecToRads(Y(T)); //rads
-    
-    double W = X*X + Y*Y;
-    double Z = W < 1.0 ? Math.sqrt(1.0 - W) : 0.0; 
-    return new Vector(
-      X, 
-      Y, 
-      Z
-    );
+    double[] periodic = new double[NUM_PARAMS];
+    PrecessionSeries.instance().periodicTerms(Param.X, T, periodic); //X and Y together
+    double X = Maths.arcsecToRads(X(T, periodic)); //rads
+    double Y = Maths.arcsecToRads(Y(T, periodic)); //rads
+    double[] n = equatorialPole(X, Y);
+    return new Vector(n[0], n[1], n[2]);
   }
   
   /** Return the position of the north equatorial pole for the given date, using J2000 mean equator and equinox. */
@@ -119,13 +157,9 @@ public final class LongTermPrecession {
   /** Return p<sub>A</sub> in arcseconds. */
   public double generalPrecession(double jd) {
     double T = AstroUtil.julianCenturiesSinceJ2000(jd);
-    double exponentialTerms =
-      + 8134.017132 
-      + 5043.0520035 *T
-      - 0.00710733   *T*T 
-      + 271E-9       *T*T*T
-    ;
-    return exponentialTerms + periodicTerms(Param.p, T);
+    double[] periodic = new double[NUM_PARAMS];
+    PrecessionSeries.instance().periodicTerms(Param.p, T, periodic);
+    return p(T, periodic);
   }
   
   /** Radians. */
@@ -136,66 +170,126 @@ public final class LongTermPrecession {
   /** Return ε<sub>A</sub> in arcseconds. */
   public double obliquityArcseconds(double jd) {
     double T = AstroUtil.julianCenturiesSinceJ2000(jd);
-    double exponentialTerms =
-      + 84028.206305 
-      + 0.3624445   *T
-      - 0.00004039  *T*T
-      - 110E-9      *T*T*T
-    ;
-    return exponentialTerms + periodicTerms(Param.epsilon, T);
+    double[] periodic = new double[NUM_PARAMS];
+    PrecessionSeries.instance().periodicTerms(Param.epsilon, T, periodic);
+    return epsilon(T, periodic);
   }
 
-  /** Obliquity at J2000.0 (radians). */
-  private static final double ε0 = Maths.arcsecToRads(84381.406);
+  /** Obliquity at J2000.0 (radians). Also used by {@link PoleStarSurvey}. */
+  static final double ε0 = Maths.arcsecToRads(84381.406);
   
-  /** Returns arcseconds. */
-  private double P(double T) {
+  private static final int NUM_PARAMS = Param.values().length;
+  
+  /** 
+   The rotation matrix in row-major order, from the four primary parameters in radians. 
+   The rows are w = n × k (normalized), n × w, and n, where k is the ecliptic pole and n is the equatorial pole.
+  */
+  static void rotation(double P, double Q, double X, double Y, double[] result) {
+    double[] k = eclipticPole(P, Q);
+    double[] n = equatorialPole(X, Y);
+    double wx =   n[1] * k[2] - n[2] * k[1];
+    double wy = -(n[0] * k[2] - n[2] * k[0]);
+    double wz =   n[0] * k[1] - n[1] * k[0];
+    double length = Math.sqrt(wx*wx + wy*wy + wz*wz);
+    wx = wx / length;
+    wy = wy / length;
+    wz = wz / length;
+    result[0] = wx;
+    result[1] = wy;
+    result[2] = wz;
+    result[3] =   n[1] * wz - n[2] * wy;
+    result[4] = -(n[0] * wz - n[2] * wx);
+    result[5] =   n[0] * wy - n[1] * wx;
+    result[6] = n[0];
+    result[7] = n[1];
+    result[8] = n[2];
+  }
+  
+  /** Unit vector, from P<sub>A</sub> and Q<sub>A</sub> in radians. */
+  static double[] eclipticPole(double P, double Q) {
+    double Z = Math.sqrt(Math.max(1 - P*P - Q*Q, 0));
+    double S = Math.sin(ε0);
+    double C = Math.cos(ε0);
+    return new double[] {
+      P, 
+      -Q*C - Z*S, 
+      -Q*S + Z*C
+    };
+  }
+  
+  /** Unit vector, from X<sub>A</sub> and Y<sub>A</sub> in radians. */
+  static double[] equatorialPole(double X, double Y) {
+    double W = X*X + Y*Y;
+    double Z = W < 1.0 ? Math.sqrt(1.0 - W) : 0.0; 
+    return new double[] {
+      X, 
+      Y, 
+      Z
+    };
+  }
+  
+  /** Returns arcseconds. The periodic terms are indexed by the ordinal of the {@link Param}. */
+  private static double P(double T, double[] periodic) {
     double exponentialTerms = 
       + 5851.607687 
       -    0.1189000  *T 
       -    0.00028913 *T*T 
       +    (101e-9)   *T*T*T
     ;
-    return exponentialTerms + periodicTerms(Param.P, T);
+    return exponentialTerms + periodic[Param.P.ordinal()];
   }
   /** Returns arcseconds. */
-  private double Q(double T) {
+  private static double Q(double T, double[] periodic) {
     double exponentialTerms =
       - 1600.886300 
       +    1.1689818  *T 
       -    0.00000020 *T*T
       -    437E-9     *T*T*T
     ;
-    return exponentialTerms + periodicTerms(Param.Q, T);
+    return exponentialTerms + periodic[Param.Q.ordinal()];
   }
   
   /** Returns arcseconds. */
-  private double X(double T) {
+  private static double X(double T, double[] periodic) {
     double exponentialTerms =
       + 5453.282155 
       + 0.4252841  *T
       - 0.00037173 *T*T
       - 152E-9     *T*T*T
     ;
-    return exponentialTerms + periodicTerms(Param.X, T);
+    return exponentialTerms + periodic[Param.X.ordinal()];
   }
   /** Returns arcseconds. */
-  private double Y(double T) {
+  private static double Y(double T, double[] periodic) {
     double exponentialTerms =
      - 73750.930350
      - 0.7675452   *T
      - 0.00018725  *T*T
      + 231E-9      *T*T*T
     ;
-    return exponentialTerms + periodicTerms(Param.Y, T);
+    return exponentialTerms + periodic[Param.Y.ordinal()];
   }
   
-  private double periodicTerms(Param param, double T) {
-    double result = 0.0; 
-    for (PeriodicTerm periodicTerm : PrecessionDataLoader.periodicTerms().get(param)) {
-      result = result + periodicTerm.contributionToSum(T); // arcseconds
-    }
-    return result;
+  /** Returns arcseconds. */
+  private static double p(double T, double[] periodic) {
+    double exponentialTerms =
+      + 8134.017132 
+      + 5043.0520035 *T
+      - 0.00710733   *T*T 
+      + 271E-9       *T*T*T
+    ;
+    return exponentialTerms + periodic[Param.p.ordinal()];
+  }
+  
+  /** Returns arcseconds. */
+  private static double epsilon(double T, double[] periodic) {
+    double exponentialTerms =
+      + 84028.206305 
+      + 0.3624445   *T
+      - 0.00004039  *T*T
+      - 110E-9      *T*T*T
+    ;
+    return exponentialTerms + periodic[Param.epsilon.ordinal()];
   }
   
   /** Informal test harness. */
@@ -215,6 +309,8 @@ public final class LongTermPrecession {
     
     Matrix rotatioMatrix = p.rotationMatrix(jd);
     LogUtil.log(rotatioMatrix);
+    Data data = p.data(jd);
+    LogUtil.log("All in one pass: ε " + radsToDegreeString(data.obliquity) + " p " + data.generalPrecession + "''");
     
     //do the example found in Meeus page 127
     jd = GregorianCal.jdForGreenwich(2028,  11, 13.19); //2462088.69
@@ -1,74 +1,116 @@
 package astropdf.astro.precession;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import astropdf.astro.time.AstroUtil;
 import astropdf.astro.time.GregorianCal;
-import astropdf.math.Maths;
 import astropdf.util.LogUtil;
 
-import static java.lang.Math.*;
-
 /**
- Low-precision model of nutation.
+ The IAU 2000B model of nutation.
  
  <P>Nutation is applied after precession.
   
- <P>If the output has low accuracy, say 1 minute of arc, 
- the inclusion of nutation may not even be necessary. (But it can't hurt, and it eliminates it as a source of error.)
- 
  <p>Nutation is both small (less than a minute of arc) and periodic. 
  Nutation doesn't accumulate over time.
  Neglecting it would not lead to growing errors over millenial time scales.
  
- <P>The time scale over which is this class is valid is the same as the 
- time scale over which its expressions for Ω (the longitude of the Moon's ascending node for its mean orbit) and 
- L (the mean longitude of the Sun) are valid. That time scale is not stated in the reference. 
+ <P>IAU 2000B has the 77 largest luni-solar terms of the full IAU 2000A model, and replaces the planetary terms with a fixed offset.
+ It agrees with IAU 2000A to about 1 milliarcsecond, in the span 1995..2050.
+ (The model used here previously had only the two largest terms, and errors on the order of 0.5 arcseconds.)
+ The terms are evaluated by {@link NutationSeries}.
  
- <P>This model is a very simple model of nutation, with only the largest two terms retained. 
-  This results in errors on the order of 0.5 arcseconds (in modern times).
+ <P>The results for the most recent times are cached, so that repeated calls for the same time cost almost nothing.
+ That's common when a rising or setting time is refined.
+ Objects of this class are immutable, and can be shared between threads.
 
-  <P>Ref: Astronomical Algorithms, Meeus 1991.
+ <P>Ref: McCarthy and Luzum, 2003, <em>An Abridged Model of the Precession-Nutation of the Celestial Pole</em>, 
+ Celest. Mech. Dyn. Astron. 85, 37.
 */
 public final class Nutation {
 
-  /** This model approximates ΔT as being 0. */
-  public Nutation(double jde) {
-    this.T= AstroUtil.julianCenturiesSinceJ2000(jde);
-    if (T > 50) {
-      LogUtil.warn("The nutation model may not be reliable over extreme time scales.");
+  /** 
+   Return the nutation for the given time, from the cache if possible. 
+   @param jde in TT. Calls with exactly the same value share the same cached result. 
+  */
+  public static Nutation at(double jde) {
+    int slot = slotFor(jde);
+    Nutation result = CACHE.get(slot);
+    if (result == null || result.jde != jde) {
+      result = new Nutation(jde);
+      CACHE.set(slot, result);
     }
+    return result;
   }
   
   /** Nutation in longitude. Return rads. */
   public double Δψ() {
-    double result = -17.20 * sin(Ω(T)) - 1.32 * sin(2*L(T)); //arcseconds
-    return Maths.arcsecToRads(result);
+    return Δψ;
   }
 
   /** Nutation in obliquity. Return rads. */
   public double Δε() {
-    double result = 9.20 * cos(Ω(T)) + 0.57 * cos(2*L(T)); //arcseconds
-    return Maths.arcsecToRads(result);
+    return Δε;
   }
   
-  private double T;
+  // PRIVATE
+  
+  /** The number of times held in the cache. A power of 2. */
+  private static final int CACHE_SIZE = 16;
+  
+  /** 
+   Each slot holds the result for one time. A new result simply replaces the old one in its slot.
+   The items are immutable, so no locking is needed. 
+  */
+  private static final AtomicReferenceArray<Nutation> CACHE = new AtomicReferenceArray<>(CACHE_SIZE);
+  
+  private final double jde;
+  private final double Δψ;
+  private final double Δε;
   
-  /** Return rads. */
-  private double Ω(double T) {
-    double result = 125.04452 - 1934.136261*T + 0.0020708*T*T; //degs
-    return Maths.degToRads(result);
+  private Nutation(double jde) {
+    this.jde = jde;
+    double T = AstroUtil.julianCenturiesSinceJ2000(jde);
+    if (T > 50) {
+      LogUtil.warn("The nutation model may not be reliable over extreme time scales.");
+    }
+    double[] result = new double[2];
+    NutationSeries.instance().evaluate(T, result);
+    this.Δψ = result[0];
+    this.Δε = result[1];
   }
   
-  /** Return rads. */
-  private double L(double T) {
-    double result = 280.4665 + 36000.7698*T; //degs
-    return Maths.degToRads(result);
+  private static int slotFor(double jde) {
+    long bits = Double.doubleToLongBits(jde);
+    int hash = (int)(bits ^ (bits >>> 32));
+    hash = hash ^ (hash >>> 16);
+    return hash & (CACHE_SIZE - 1);
   }
-
+  
   /** Informal test harness. */
   public static void main(String... args) {
+    //the test case for iauNut00b in SOFA's t_sofa_c.c, with a tolerance of 1e-13 rads
+    Nutation nutation = Nutation.at(2400000.5 + 53736.0);
+    LogUtil.log("SOFA test Δψ: " + nutation.Δψ() + " expected -0.9632552291148362783e-5, diff " + (nutation.Δψ() - -0.9632552291148362783e-5));
+    LogUtil.log("SOFA test Δε: " + nutation.Δε() + " expected  0.4063197106621159367e-4, diff " + (nutation.Δε() - 0.4063197106621159367e-4));
+    
     double jd = GregorianCal.jdForGreenwich(1987, 4, 10.0);
-    Nutation nutation = new Nutation(jd);
-    LogUtil.log("1987-04-10 nutation Δψ: " + AstroUtil.radsToDegreeString(nutation.Δψ()));  // -3.788", off by 0.333"
-    LogUtil.log("1987-04-10 nutation Δε: " + AstroUtil.radsToDegreeString(nutation.Δε()));  // +9.443", off by 0.045"
+    nutation = Nutation.at(jd);
+    LogUtil.log("1987-04-10 nutation Δψ: " + AstroUtil.radsToDegreeString(nutation.Δψ()));  // Meeus (IAU 1980 model): -3.788"
+    LogUtil.log("1987-04-10 nutation Δε: " + AstroUtil.radsToDegreeString(nutation.Δε()));  // Meeus (IAU 1980 model): +9.443"
+    LogUtil.log("Same object from the cache: " + (nutation == Nutation.at(jd)));
+    
+    int n = 100_000;
+    long start = System.nanoTime();
+    double sum = 0.0;
+    for(int i = 0; i < n; ++i) {
+      sum = sum + Nutation.at(jd + i * 0.01).Δψ();
+    }
+    LogUtil.log("Distinct times: " + (System.nanoTime() - start) / n + " ns per call. Checksum: " + sum);
+    start = System.nanoTime();
+    for(int i = 0; i < n; ++i) {
+      sum = sum + Nutation.at(jd + (i % 4) * 0.01).Δψ();
+    }
+    LogUtil.log("Repeated times: " + (System.nanoTime() - start) / n + " ns per call. Checksum: " + sum);
   }
 }
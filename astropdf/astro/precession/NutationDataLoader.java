@@ -0,0 +1,91 @@
+package astropdf.astro.precession;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import astropdf.util.CoefficientBundle;
+import astropdf.util.DataFileReader;
+import astropdf.util.LogUtil;
+
+/** 
+ Load the terms of the IAU 2000B nutation model.
+ The data is read from the {@link CoefficientBundle}, if it exists; otherwise, the text data file in the native directory is parsed.
+*/
+public final class NutationDataLoader {
+
+  /** 
+   Each row has the multiples of l, l', F, D, and Ω, and then the 6 coefficients of the term.
+   The same columns as the text file. 
+  */
+  static List<double[]> rows() {
+    return ROWS;
+  }
+  
+  /** The data for nutation, parsed from the text data file, as a section of a {@link CoefficientBundle}. */
+  public static Map<String, double[][]> bundleSections() {
+    Map<String, double[][]> result = new LinkedHashMap<>();
+    result.put(SECTION_NAME, rowsFromTextFile().toArray(new double[0][]));
+    return result;
+  }
+  
+  // PRIVATE 
+  
+  private static final String FILE_NAME = "nutation-2000B.utf8";
+  private static final String SECTION_NAME = "nutation-2000B";
+  private static final int NUM_COLUMNS = 11;
+  private static List<double[]> ROWS;
+
+  private static List<double[]> rowsFromTextFile() {
+    List<double[]> result = new ArrayList<>();
+    DataFileReader reader = new DataFileReader();
+    List<String> lines = reader.readFileUTF8(NutationDataLoader.class, FILE_NAME);
+    for(String line : lines) {
+      if (!line.isBlank() && !line.trim().startsWith(DataFileReader.COMMENT)) {
+        result.add(rowFor(line));
+      }
+    }
+    return result;
+  }
+  
+  private static List<double[]> rowsFrom(CoefficientBundle bundle) {
+    List<double[]> result = new ArrayList<>();
+    DoubleBuffer data = bundle.section(SECTION_NAME);
+    while (data.hasRemaining()) {
+      double[] row = new double[NUM_COLUMNS];
+      data.get(row);
+      result.add(row);
+    }
+    return result;
+  }
+  
+  /*  0,0,0,0,1,-172064161,-174666,33386,92052331,9086,15377  */
+  private static double[] rowFor(String line) {
+    String[] parts = line.split(Pattern.quote(","));
+    if (parts.length != NUM_COLUMNS) {
+      throw new RuntimeException("Expecting " + NUM_COLUMNS + " columns in the nutation data: " + line);
+    }
+    double[] result = new double[parts.length];
+    for(int idx = 0; idx < parts.length; ++idx) {
+      result[idx] = Double.valueOf(parts[idx].trim());
+    }
+    return result;
+  }
+
+  /** Executed once automatically when this class loads. */
+  static {
+    Optional<CoefficientBundle> bundle = CoefficientBundle.instance();
+    if (bundle.isPresent() && bundle.get().has(SECTION_NAME)) {
+      LogUtil.log("Populating nutation data, from the coefficient bundle.");
+      ROWS = rowsFrom(bundle.get());
+    }
+    else {
+      LogUtil.log("Populating nutation data.");
+      ROWS = rowsFromTextFile();
+    }
+  }
+}
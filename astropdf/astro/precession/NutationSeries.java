@@ -0,0 +1,145 @@
+package astropdf.astro.precession;
+
+import java.util.List;
+
+import astropdf.math.Maths;
+import astropdf.math.MultipleAngles;
+
+/**
+ The 77 luni-solar terms of the IAU 2000B nutation model, compiled into primitive arrays (one array per column).
+
+ <P>The argument of each term is a sum of small multiples of the 5 fundamental arguments l, l', F, D, and Ω.
+ For each time, the sines and cosines of those multiples are computed once, and placed in tables
+ (see {@link MultipleAngles}). The sine and cosine of each term's argument are then built from table lookups,
+ with no further calls to <code>sin</code> or <code>cos</code>. Δψ and Δε are summed in the same pass.
+
+ <P>Ref: McCarthy and Luzum, 2003, Celest. Mech. Dyn. Astron. 85, 37. The same model is implemented by SOFA's <code>iauNut00b</code>.
+*/
+final class NutationSeries {
+
+  /** The single instance, built from the data in {@link NutationDataLoader}. */
+  static NutationSeries instance() {
+    return INSTANCE;
+  }
+
+  /**
+   Nutation in longitude and in obliquity.
+   Allocates nothing: the tables of multiple angles are kept for each thread, and re-used.
+   @param T Julian centuries since J2000 (TT).
+   @param result receives Δψ and Δε, in radians.
+  */
+  void evaluate(double T, double[] result) {
+    Tables tables = TABLES.get();
+    double[][] sin = tables.sin;
+    double[][] cos = tables.cos;
+    double[] args = tables.args;
+    fundamentalArguments(T, args);
+    for(int a = 0; a < NUM_ARGS; ++a) {
+      MultipleAngles.fill(args[a], sin[a], cos[a]);
+    }
+    double Δψ = 0.0;
+    double Δε = 0.0;
+    //smallest terms first, to reduce rounding error
+    for(int i = numTerms - 1; i >= 0; --i) {
+      double s = 0.0;
+      double c = 1.0;
+      for(int a = 0; a < NUM_ARGS; ++a) {
+        int k = multiple[a][i];
+        double sk = sin[a][k];
+        double ck = cos[a][k];
+        double temp = s * ck + c * sk;
+        c = c * ck - s * sk;
+        s = temp;
+      }
+      Δψ = Δψ + (ps[i] + pst[i] * T) * s + pc[i] * c;
+      Δε = Δε + (ec[i] + ect[i] * T) * c + es[i] * s;
+    }
+    result[0] = (Δψ / UNITS_PER_ARCSEC + PLANETARY_Δψ) * RADS_PER_ARCSEC;
+    result[1] = (Δε / UNITS_PER_ARCSEC + PLANETARY_Δε) * RADS_PER_ARCSEC;
+  }
+
+  // PRIVATE
+
+  private static final NutationSeries INSTANCE = new NutationSeries();
+
+  /** Scratch space for {@link #evaluate(double, double[])}, overwritten by each call. */
+  private static final class Tables {
+    final double[][] sin = new double[NUM_ARGS][2 * MAX_MULTIPLE + 1];
+    final double[][] cos = new double[NUM_ARGS][2 * MAX_MULTIPLE + 1];
+    final double[] args = new double[NUM_ARGS];
+  }
+
+  /** One set of tables for each thread, since the series itself is shared. */
+  private static final ThreadLocal<Tables> TABLES = ThreadLocal.withInitial(Tables::new);
+
+  /** l, l', F, D, Ω. */
+  private static final int NUM_ARGS = 5;
+  /** The largest multiple of any fundamental argument in the data. */
+  private static final int MAX_MULTIPLE = 4;
+  /** The coefficients are in units of 0.1 microarcseconds. */
+  private static final double UNITS_PER_ARCSEC = 1.0E7;
+  /** 
+   Arcseconds. Fixed offsets that stand in for the planetary terms, which IAU 2000B leaves out. 
+   They're the offsets for the span 1995..2050.
+  */
+  private static final double PLANETARY_Δψ = -0.000135;
+  private static final double PLANETARY_Δε = +0.000388;
+  private static final double ARCSEC_PER_TURN = 1_296_000.0;
+  /** Avoids the boxing in {@link Maths#arcsecToRads(Double)}. */
+  private static final double RADS_PER_ARCSEC = Math.PI / (180.0 * 3600.0);
+
+  private final int numTerms;
+  /** For each fundamental argument, the index of its multiple into the tables, for each term. */
+  private final int[][] multiple;
+  private final double[] ps;
+  private final double[] pst;
+  private final double[] pc;
+  private final double[] ec;
+  private final double[] ect;
+  private final double[] es;
+
+  private NutationSeries() {
+    List<double[]> rows = NutationDataLoader.rows();
+    numTerms = rows.size();
+    multiple = new int[NUM_ARGS][numTerms];
+    ps = new double[numTerms];
+    pst = new double[numTerms];
+    pc = new double[numTerms];
+    ec = new double[numTerms];
+    ect = new double[numTerms];
+    es = new double[numTerms];
+    for(int i = 0; i < numTerms; ++i) {
+      double[] row = rows.get(i);
+      for(int a = 0; a < NUM_ARGS; ++a) {
+        multiple[a][i] = index((int)row[a]);
+      }
+      ps[i] = row[5];
+      pst[i] = row[6];
+      pc[i] = row[7];
+      ec[i] = row[8];
+      ect[i] = row[9];
+      es[i] = row[10];
+    }
+  }
+
+  private static int index(int multiple) {
+    if (Math.abs(multiple) > MAX_MULTIPLE) {
+      throw new IllegalArgumentException("Multiple is too large for the tables: " + multiple);
+    }
+    return MAX_MULTIPLE + multiple;
+  }
+
+  /** l, l', F, D, Ω in radians. The expressions of Simon et al. 1994, as used by IAU 2000B. */
+  private static void fundamentalArguments(double T, double[] result) {
+    result[0] = turns(485868.249036 + 1717915923.2178 * T); //l, the Moon's mean anomaly
+    result[1] = turns(1287104.79305 + 129596581.0481 * T);  //l', the Sun's mean anomaly
+    result[2] = turns(335779.526232 + 1739527262.8478 * T); //F, the Moon's mean argument of latitude
+    result[3] = turns(1072260.70369 + 1602961601.2090 * T); //D, the Moon's mean elongation from the Sun
+    result[4] = turns(450160.398036 - 6962890.5431 * T);    //Ω, the longitude of the Moon's mean ascending node
+  }
+
+  /** Reduce arcseconds to less than a full turn, and convert to radians. */
+  private static double turns(double arcsec) {
+    return (arcsec % ARCSEC_PER_TURN) * RADS_PER_ARCSEC;
+  }
+}
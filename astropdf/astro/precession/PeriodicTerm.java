@@ -1,23 +0,0 @@
-package astropdf.astro.precession;
-
-import static java.lang.Math.cos;
-import static java.lang.Math.sin;
-import static astropdf.math.Maths.*;
-
-/** A cosine-term and a sine-term having the same period. */
-final class PeriodicTerm {
-  
-  /** Cosine: amplitude in arcseconds. */
-  double C;
-  
-  /** Sine: amplitude in arcseconds. */
-  double S;
-  
-  /** Period in Julian centuries. */
-  double P;
-  
-  /** Returns arcseconds. T in Julian centuries. */
-  double contributionToSum(double T) {
-    return C * cos(TWO_PI * T / P) + S * sin(TWO_PI * T / P);  
-  }
-}
\ No newline at end of file
@@ -0,0 +1,291 @@
+package astropdf.astro.precession;
+
+import static astropdf.util.LogUtil.log;
+
+import static astropdf.astro.precession.ClosestApproachToPole.dot;
+import static astropdf.astro.precession.ClosestApproachToPole.jdFor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import astropdf.astro.precession.ClosestApproachToPole.Closest;
+import astropdf.astro.precession.ClosestApproachToPole.Pole;
+import astropdf.astro.star.Star;
+import astropdf.astro.time.AstroUtil;
+import astropdf.config.Config;
+import astropdf.config.ConfigFromFile;
+import astropdf.util.Constants;
+import astropdf.util.FileWriter;
+import astropdf.util.PostScript;
+
+/**
+ Batch job: the closest approach of every star in the catalog to both celestial poles, over a window of years.
+
+ <P>The search is done by {@link ClosestApproachToPole}, once for each pole, in parallel,
+ in a fork-join pool with the given number of threads.
+
+ <P>The output goes to the configured output directory:
+ <ul>
+  <li>{@value #REPORT_FILE}: every star, sorted by its smallest separation from either pole.
+  A closest approach at the start or end of the window is flagged, since the true closest approach is then outside the window.
+  <li>{@value #CHART_FILE}: a PostScript chart for each pole, showing the path of the pole over the window,
+  and the stars that pass within {@value #POLE_STAR_DEGREES} degrees of it, labelled with the year of closest approach.
+ </ul>
+
+ <P>Arguments (optional): the number of years either side of the year 0 (default {@value ClosestApproachToPole#MAX_YEAR}),
+ and the number of threads (default: the number of processors).
+ The config file is given in the usual way, with <code>-DastropdfConfigFile</code>.
+ The path of the pole is mapped from the file {@value PoleTrajectory#FILE_NAME} in the output directory; 
+ the first run fits it, and saves it there.
+*/
+public final class PoleStarSurvey {
+
+  /** A star is labelled as a pole star on the chart if it passes within this many degrees of the pole - {@value}. */
+  public static final double POLE_STAR_DEGREES = 2.0;
+
+  /** Name of the output text file - {@value}. */
+  public static final String REPORT_FILE = "pole-star-survey.txt";
+
+  /** Name of the output PostScript file - {@value}. */
+  public static final String CHART_FILE = "pole-star-survey.ps";
+
+  /** Run the survey. */
+  public static void main(String... args) throws IOException {
+    int maxYear = args.length > 0 ? Integer.valueOf(args[0]) : ClosestApproachToPole.MAX_YEAR;
+    int numThreads = args.length > 1 ? Integer.valueOf(args[1]) : Runtime.getRuntime().availableProcessors();
+    Config config = new ConfigFromFile().init();
+    PoleTrajectory poles = PoleTrajectory.mapOrFit(Path.of(config.outputDir(), PoleTrajectory.FILE_NAME));
+    PoleStarSurvey survey = new PoleStarSurvey(maxYear, config, poles);
+    long start = System.nanoTime();
+    List<Entry> entries = survey.run(numThreads);
+    log("Surveyed " + entries.size() + " stars, +/- " + maxYear + " years, with " + numThreads + " threads, in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    for(Entry entry : entries.subList(0, Math.min(10, entries.size()))) {
+      Closest closest = entry.nearer();
+      log("  HIP " + entry.star.INDEX + " " + entry.star.NAME + " " + closest.pole + " " + Math.round(closest.year()) + edgeFlag(closest) + " " + closest.separationString() + " " + entry.star.PROPER_NAME);
+    }
+    FileWriter writer = new FileWriter();
+    writer.outputUTF8(survey.report(entries), config.outputDir(), REPORT_FILE);
+    writer.outputLATIN_1(survey.chart(entries), config.outputDir(), CHART_FILE);
+    log("Saved " + REPORT_FILE + " and " + CHART_FILE + " to " + config.outputDir());
+  }
+
+  /** The closest approach of one star to each pole. */
+  public static final class Entry {
+    public Star star;
+    public Closest north;
+    public Closest south;
+    /** The closer of the two approaches. */
+    public Closest nearer() {
+      return north.separation <= south.separation ? north : south;
+    }
+  }
+
+  public PoleStarSurvey(int maxYear, Config config, PoleTrajectory poles) throws IOException {
+    this.maxYear = maxYear;
+    this.approach = new ClosestApproachToPole(maxYear, config, poles);
+  }
+
+  /** Every star in the catalog, sorted by its smallest separation from either pole. */
+  public List<Entry> run(int numThreads) {
+    List<Star> stars = approach.stars();
+    ForkJoinPool pool = new ForkJoinPool(numThreads);
+    try {
+      //both lists are in catalog order
+      List<Closest> north = approach.survey(Pole.NORTH, pool);
+      List<Closest> south = approach.survey(Pole.SOUTH, pool);
+      List<Entry> result = new ArrayList<>();
+      for(int i = 0; i < stars.size(); ++i) {
+        Entry entry = new Entry();
+        entry.star = stars.get(i);
+        entry.north = north.get(i);
+        entry.south = south.get(i);
+        result.add(entry);
+      }
+      result.sort(Comparator.comparingDouble(entry -> entry.nearer().separation));
+      return result;
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  /** Plain text report, one line per star. */
+  public String report(List<Entry> entries) {
+    StringBuilder result = new StringBuilder();
+    result.append("Closest approach of each star to the celestial poles, in the years -" + maxYear + "..+" + maxYear + "." + Constants.NL);
+    result.append("Sorted by the separation from the nearer pole. Years are astronomical (0 = 1 BC)." + Constants.NL);
+    result.append(EDGE_FLAG + " The separation is smallest at the start or end of the window, so the true closest approach is outside the window." + Constants.NL + Constants.NL);
+    result.append(String.format(Locale.ROOT, "%-7s %-10s %-14s %-5s %8s  %-16s %-5s %8s  %-16s%n", "HIP", "Star", "Name", "Pole", "Year", "Separation", "Pole", "Year", "Separation"));
+    for(Entry entry : entries) {
+      Closest nearer = entry.nearer();
+      Closest other = nearer == entry.north ? entry.south : entry.north;
+      result.append(String.format(Locale.ROOT, "%-7d %-10s %-14s %-5s %8d%-1s %-16s %-5s %8d%-1s %-16s%n",
+        entry.star.INDEX, entry.star.NAME, entry.star.PROPER_NAME,
+        nearer.pole, Math.round(nearer.year()), edgeFlag(nearer), nearer.separationString(),
+        other.pole, Math.round(other.year()), edgeFlag(other), other.separationString()
+      ));
+    }
+    return result.toString();
+  }
+
+  /**
+   A single page of PostScript, with a chart for each pole.
+   Each chart is an azimuthal equidistant projection centered on the J2000 ecliptic pole,
+   around which the celestial pole moves. The sky is shown as seen from the inside of the celestial sphere.
+  */
+  public String chart(List<Entry> entries) {
+    StringBuilder ps = new StringBuilder();
+    ps.append("%!PS-Adobe-3.0" + Constants.NL);
+    ps.append("%%Title: " + PostScript.string("Pole star survey") + Constants.NL);
+    ps.append("%%Pages: 1" + Constants.NL);
+    ps.append("%%EndComments" + Constants.NL);
+    ps.append("/dot { 0 360 arc fill } def" + Constants.NL); // x y r dot
+    ps.append("/label { moveto show } def" + Constants.NL); // (text) x y label
+    ps.append("%%Page: 1 1" + Constants.NL);
+    ps.append("/Helvetica findfont 7 scalefont setfont" + Constants.NL);
+    chartFor(Pole.NORTH, entries, PAGE_WIDTH / 2, PAGE_HEIGHT * 3 / 4 - 5, ps);
+    chartFor(Pole.SOUTH, entries, PAGE_WIDTH / 2, PAGE_HEIGHT / 4 + 5, ps);
+    ps.append("showpage" + Constants.NL);
+    ps.append("%%EOF" + Constants.NL);
+    return ps.toString();
+  }
+
+  // PRIVATE
+
+  private static final double PAGE_WIDTH = 612;
+  private static final double PAGE_HEIGHT = 792;
+  /** The radius of each chart, in degrees from the ecliptic pole. */
+  private static final double CHART_DEGREES = 30.0;
+  /** The radius of each chart, in points. */
+  private static final double CHART_RADIUS = 180.0;
+  private static final int PATH_STEP_YEARS = 100;
+  private static final int TICK_YEARS = 1000;
+  private static final int LABEL_YEARS = 5000;
+  /** Marks a closest approach at the start or end of the window. */
+  private static final String EDGE_FLAG = "*";
+  private static final Map<String, String> GREEK = Map.ofEntries(
+    Map.entry("α", "alpha"), Map.entry("β", "beta"), Map.entry("γ", "gamma"), Map.entry("δ", "delta"),
+    Map.entry("ε", "epsilon"), Map.entry("ζ", "zeta"), Map.entry("η", "eta"), Map.entry("θ", "theta"),
+    Map.entry("ι", "iota"), Map.entry("κ", "kappa"), Map.entry("λ", "lambda"), Map.entry("μ", "mu"),
+    Map.entry("ν", "nu"), Map.entry("ξ", "xi"), Map.entry("ο", "omicron"), Map.entry("π", "pi"),
+    Map.entry("ρ", "rho"), Map.entry("σ", "sigma"), Map.entry("τ", "tau"), Map.entry("υ", "upsilon"),
+    Map.entry("φ", "phi"), Map.entry("χ", "chi"), Map.entry("ψ", "psi"), Map.entry("ω", "omega")
+  );
+
+  private int maxYear;
+  private ClosestApproachToPole approach;
+
+  private void chartFor(Pole pole, List<Entry> entries, double x0, double y0, StringBuilder ps) {
+    int sign = pole == Pole.NORTH ? 1 : -1;
+    //the ecliptic pole at J2000, and two unit vectors perpendicular to it
+    double ε0 = LongTermPrecession.ε0;
+    double[] center = {0, -sign * Math.sin(ε0), sign * Math.cos(ε0)};
+    double[] e1 = {1, 0, 0};
+    double[] e2 = {0, sign * Math.cos(ε0), sign * Math.sin(ε0)};
+    Projection projection = new Projection(center, e1, e2, x0, y0);
+
+    ps.append("% " + pole + " pole" + Constants.NL);
+    ps.append("0.5 setlinewidth" + Constants.NL);
+    ps.append(fmt("newpath %.2f %.2f %.2f 0 360 arc stroke%n", x0, y0, CHART_RADIUS));
+    ps.append(fmt("(Path of the %s celestial pole, %d to %d) %.2f %.2f label%n", pole.toString().toLowerCase(), -maxYear, maxYear, x0 - CHART_RADIUS, y0 + CHART_RADIUS + 8));
+    ps.append(fmt("(+ ecliptic pole) %.2f %.2f label%n", x0 - 2.5, y0 - 2.5));
+
+    //the path of the pole
+    PoleTrajectory poles = approach.poles();
+    double[] n = new double[3];
+    ps.append("0.8 setlinewidth newpath" + Constants.NL);
+    boolean first = true;
+    for(double jd = approach.jdStart(); jd <= approach.jdEnd(); jd = jd + PATH_STEP_YEARS * AstroUtil.DAYS_PER_JULIAN_YEAR) {
+      double[] xy = projection.of(scaled(poles.equatorialNorthPole(jd, n), sign));
+      ps.append(fmt("%.2f %.2f %s%n", xy[0], xy[1], first ? "moveto" : "lineto"));
+      first = false;
+    }
+    ps.append("stroke" + Constants.NL);
+
+    //ticks and labels for the years
+    int firstTick = (int)Math.ceil(-maxYear / (double)TICK_YEARS) * TICK_YEARS;
+    for(int year = firstTick; year <= maxYear; year = year + TICK_YEARS) {
+      double jd = jdFor(year);
+      if (jd >= approach.jdStart() && jd <= approach.jdEnd()) {
+        double[] xy = projection.of(scaled(poles.equatorialNorthPole(jd, n), sign));
+        ps.append(fmt("%.2f %.2f 1.2 dot%n", xy[0], xy[1]));
+        if (year % LABEL_YEARS == 0) {
+          ps.append(fmt("(%d) %.2f %.2f label%n", year, xy[0] + 3, xy[1] - 8));
+        }
+      }
+    }
+
+    //the pole stars, at the time of their closest approach
+    for(Entry entry : entries) {
+      Closest closest = pole == Pole.NORTH ? entry.north : entry.south;
+      if (Math.toDegrees(closest.separation) <= POLE_STAR_DEGREES) {
+        double[] xy = projection.of(approach.directionAt(entry.star, closest.jd));
+        double radius = Math.max(0.6, 3.2 - 0.45 * entry.star.MAG);
+        ps.append(fmt("%.2f %.2f %.2f dot%n", xy[0], xy[1], radius));
+        String text = labelFor(entry.star) + " " + Math.round(closest.year()) + edgeFlag(closest);
+        ps.append(fmt("%s %.2f %.2f label%n", PostScript.string(text), xy[0] + radius + 1.5, xy[1] + 1.5));
+      }
+    }
+  }
+
+  /** Azimuthal equidistant projection, from a unit vector to page coordinates in points. */
+  private static final class Projection {
+    Projection(double[] center, double[] e1, double[] e2, double x0, double y0){
+      this.center = center;
+      this.e1 = e1;
+      this.e2 = e2;
+      this.x0 = x0;
+      this.y0 = y0;
+    }
+    double[] of(double[] u) {
+      double ρ = Math.toDegrees(Math.acos(Math.max(-1.0, Math.min(1.0, dot(u, center)))));
+      double a = dot(u, e1);
+      double b = dot(u, e2);
+      double h = Math.hypot(a, b);
+      double scale = h == 0 ? 0 : ρ * CHART_RADIUS / (CHART_DEGREES * h);
+      //mirror x, for the view from inside the sphere
+      return new double[] {x0 - a * scale, y0 + b * scale};
+    }
+    private double[] center;
+    private double[] e1;
+    private double[] e2;
+    private double x0;
+    private double y0;
+  }
+
+  /** For the south pole, the vector is reversed. */
+  private static double[] scaled(double[] v, int sign) {
+    return new double[] {sign * v[0], sign * v[1], sign * v[2]};
+  }
+
+  /** 
+   The proper name if there is one; otherwise the Bayer or Flamsteed name, with the Greek letter spelled out (Latin-1 has no Greek);
+   otherwise the Hipparcos number. 
+  */
+  private static String labelFor(Star star) {
+    String result = star.PROPER_NAME;
+    if (result == null || result.isBlank()) {
+      result = star.NAME.isBlank() ? "HIP " + star.INDEX : star.NAME;
+      String bayer = star.getBayer();
+      if (!bayer.isEmpty()) {
+        String letter = GREEK.getOrDefault(bayer.substring(0, 1), bayer.substring(0, 1));
+        result = letter + bayer.substring(1) + " " + star.getConstellationAbbr();
+      }
+    }
+    return result;
+  }
+
+  private static String edgeFlag(Closest closest) {
+    return closest.atEdge ? EDGE_FLAG : "";
+  }
+
+  private static String fmt(String format, Object... args) {
+    return String.format(Locale.ROOT, format, args);
+  }
+}
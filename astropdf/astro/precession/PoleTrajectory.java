@@ -0,0 +1,247 @@
+package astropdf.astro.precession;
+
+import static astropdf.math.Maths.radsToDegs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import astropdf.astro.time.AstroUtil;
+import astropdf.astro.time.GregorianCal;
+import astropdf.math.ChebyshevTable;
+import astropdf.math.ChebyshevTableFile;
+import astropdf.util.LogUtil;
+
+/**
+ The paths of the ecliptic pole and the equatorial pole over the whole span of the long-term precession model,
+ 200,000 years either side of J2000.
+
+ <P>The 4 primary parameters of {@link LongTermPrecession} (P<sub>A</sub>, Q<sub>A</sub>, X<sub>A</sub>, Y<sub>A</sub>)
+ are fitted with piecewise Chebyshev series ({@link ChebyshevTable}), with segments of {@value #CENTURIES_PER_SEGMENT} centuries.
+ Finding a value means finding the segment directly from the time, and summing a single short series.
+ That's much faster than summing all of the periodic terms, and matters when the poles are sampled every year
+ over many thousands of years.
+
+ <P>The error of the fit, with respect to the direct computation, is bounded by {@link #errorBound()}.
+ It's many orders of magnitude smaller than the error of the model itself, which is a fraction of a degree at the ends of its span.
+
+ <P>The fitted data can be saved to a binary file, and later memory-mapped by other runs (see {@link ChebyshevTableFile}).
+ This class is immutable, and can be shared between threads.
+*/
+public final class PoleTrajectory {
+
+  /** Length of each segment - {@value} Julian centuries. */
+  public static final double CENTURIES_PER_SEGMENT = 20.0;
+
+  /** The span of the long-term precession model, either side of J2000 - {@value} Julian centuries. */
+  public static final double MAX_CENTURIES = 2000.0;
+
+  /** Fit the full span of the model, from scratch. This takes well under a second. */
+  public static PoleTrajectory fit() {
+    LogUtil.log("Fitting the trajectory of the poles over +/- " + MAX_CENTURIES + " centuries.");
+    LongTermPrecession precession = new LongTermPrecession();
+    ChebyshevTable table = ChebyshevTable.fit(
+      jd -> primaryParams(precession.data(jd)), NOT_ANGLES,
+      jdFor(-MAX_CENTURIES), jdFor(MAX_CENTURIES), CENTURIES_PER_SEGMENT * AstroUtil.DAYS_PER_JULIAN_CENTURY, DEGREE
+    );
+    return new PoleTrajectory(table);
+  }
+
+  /**
+   Map a file previously created by {@link #save(Path)}.
+   The coefficients are read directly from the mapped file, and are not copied onto the heap.
+  */
+  public static PoleTrajectory map(Path path) throws IOException {
+    LogUtil.log("Mapping pole trajectory file: " + path);
+    ChebyshevTable table = ChebyshevTableFile.map(path).get(TABLE_NAME);
+    if (table == null) {
+      throw new IOException("No table named " + TABLE_NAME + " in " + path);
+    }
+    return new PoleTrajectory(table);
+  }
+
+  /** The usual name of the file saved by {@link #save(Path)} - {@value}. */
+  public static final String FILE_NAME = "pole-trajectory.cheb";
+
+  /** Map the file if it exists; otherwise, fit from scratch and save the file, for the next run. */
+  public static PoleTrajectory mapOrFit(Path path) throws IOException {
+    if (Files.exists(path)) {
+      return map(path);
+    }
+    PoleTrajectory result = fit();
+    result.save(path);
+    return result;
+  }
+
+  /** Save the fitted data to a binary file, which can later be passed to {@link #map(Path)}. */
+  public void save(Path path) throws IOException {
+    Map<String, ChebyshevTable> tables = new LinkedHashMap<>();
+    tables.put(TABLE_NAME, table);
+    ChebyshevTableFile.save(tables, path);
+  }
+
+  /** The start of the span of this table. */
+  public double jdStart() {
+    return table.start();
+  }
+
+  /** The end of the span of this table. */
+  public double jdEnd() {
+    return table.end();
+  }
+
+  /** Return true only if the given time is in the span of this table. */
+  public boolean covers(double jd) {
+    return table.covers(jd);
+  }
+
+  /**
+   Unit vector that points to the north ecliptic pole, using J2000 mean equator and equinox.
+   As in {@link LongTermPrecession#eclipticNorthPole(double)}.
+   @param result receives x, y, z. It's also the return value.
+  */
+  public double[] eclipticNorthPole(double jd, double[] result) {
+    double[] k = LongTermPrecession.eclipticPole(table.value(P, jd), table.value(Q, jd));
+    System.arraycopy(k, 0, result, 0, 3);
+    return result;
+  }
+
+  /**
+   Unit vector that points to the north equatorial pole, using J2000 mean equator and equinox.
+   As in {@link LongTermPrecession#equatorialNorthPole(double)}.
+   @param result receives x, y, z. It's also the return value.
+  */
+  public double[] equatorialNorthPole(double jd, double[] result) {
+    double[] n = LongTermPrecession.equatorialPole(table.value(X, jd), table.value(Y, jd));
+    System.arraycopy(n, 0, result, 0, 3);
+    return result;
+  }
+
+  /**
+   The rotation matrix from J2000 to the mean equator and equinox of date, in row-major order.
+   As in {@link LongTermPrecession#rotationMatrix(double)}.
+   @param result receives the 9 elements of the matrix. It's also the return value.
+  */
+  public double[] rotation(double jd, double[] result) {
+    LongTermPrecession.rotation(table.value(P, jd), table.value(Q, jd), table.value(X, jd), table.value(Y, jd), result);
+    return result;
+  }
+
+  /**
+   A bound on the error of the fitted values of P<sub>A</sub>, Q<sub>A</sub>, X<sub>A</sub>, and Y<sub>A</sub>,
+   with respect to the direct computation, in radians. Since those are direction cosines of the poles, this is also a bound on
+   the error in the direction of each pole, to first order.
+
+   <P>The same function is fitted again, with {@value #EXTRA_DEGREE} more degrees. The error of this table is at most
+   its difference from the refit (see {@link ChebyshevTable#differenceBound(ChebyshevTable)}: the tail of coefficients past
+   the degree of this table, plus the aliasing in the coefficients it does have), plus the error of the refit itself.
+   The error of the refit isn't known exactly; as a margin, the size of its last coefficient is added.
+   The bound is over all segments and all four parameters.
+   This is computed the first time it's called, and takes about as long as the fit itself.
+  */
+  public synchronized double errorBound() {
+    if (errorBound == null) {
+      LongTermPrecession precession = new LongTermPrecession();
+      ChebyshevTable refit = ChebyshevTable.fit(
+        jd -> primaryParams(precession.data(jd)), NOT_ANGLES, table.start(), table.end(), table.interval(), table.degree() + EXTRA_DEGREE
+      );
+      double[] difference = table.differenceBound(refit);
+      double[] margin = refit.lastCoefficient();
+      double result = 0.0;
+      for(int coord = 0; coord < NOT_ANGLES.length; ++coord) {
+        result = Math.max(result, difference[coord] + margin[coord]);
+      }
+      errorBound = result;
+    }
+    return errorBound;
+  }
+
+  /**
+   The largest difference between the fitted and the directly computed values of P<sub>A</sub>, Q<sub>A</sub>,
+   X<sub>A</sub>, and Y<sub>A</sub>, in radians, at {@value #SAMPLES_PER_SEGMENT} evenly spaced times in each segment, 
+   away from the nodes of the fit. This is a check on {@link #errorBound()}, not a bound: the error between the samples isn't seen.
+   This is computed the first time it's called, and takes about as long as the fit itself.
+  */
+  public synchronized double sampledMaxError() {
+    if (sampledMaxError == null) {
+      LongTermPrecession precession = new LongTermPrecession();
+      double result = 0.0;
+      for(int segment = 0; segment < table.numSegments(); ++segment) {
+        for(int i = 0; i < SAMPLES_PER_SEGMENT; ++i) {
+          double jd = table.start() + (segment + (i + 0.5) / SAMPLES_PER_SEGMENT) * table.interval();
+          double[] exact = primaryParams(precession.data(jd));
+          for(int coord = 0; coord < NOT_ANGLES.length; ++coord) {
+            result = Math.max(result, Math.abs(table.value(coord, jd) - exact[coord]));
+          }
+        }
+      }
+      sampledMaxError = result;
+    }
+    return sampledMaxError;
+  }
+
+  // PRIVATE
+
+  private static final String TABLE_NAME = "poles";
+  private static final int DEGREE = 12;
+  private static final int SAMPLES_PER_SEGMENT = 16;
+  /** The refit used by {@link #errorBound()} has this many more degrees - {@value}. */
+  private static final int EXTRA_DEGREE = 4;
+  private static final boolean[] NOT_ANGLES = {false, false, false, false};
+  /** The order of the coordinates in the table. */
+  private static final int P = 0;
+  private static final int Q = 1;
+  private static final int X = 2;
+  private static final int Y = 3;
+
+  private final ChebyshevTable table;
+  private Double errorBound;
+  private Double sampledMaxError;
+
+  private PoleTrajectory(ChebyshevTable table) {
+    this.table = table;
+  }
+
+  private static double[] primaryParams(LongTermPrecession.Data data) {
+    return new double[] {data.P, data.Q, data.X, data.Y};
+  }
+
+  private static double jdFor(double centuries) {
+    return AstroUtil.J2000 + centuries * AstroUtil.DAYS_PER_JULIAN_CENTURY;
+  }
+
+  /** Informal test harness. Optional argument: the name of a file to save to, or map from. */
+  public static void main(String... args) throws IOException {
+    long start = System.nanoTime();
+    PoleTrajectory poles = args.length == 1 ? mapOrFit(Path.of(args[0])) : fit();
+    LogUtil.log("Ready in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    LogUtil.log("Error bound of the fit: " + radsToDegs(poles.errorBound()) * 3600 + " arcsec");
+    LogUtil.log("Max error of the fit, sampled: " + radsToDegs(poles.sampledMaxError()) * 3600 + " arcsec");
+
+    //every year for 400,000 years, the direct computation compared with the table
+    LongTermPrecession precession = new LongTermPrecession();
+    double[] n = new double[3];
+    double jdStart = jdFor(-MAX_CENTURIES);
+    int numYears = (int)(2 * MAX_CENTURIES * 100);
+    start = System.nanoTime();
+    double sum = 0.0;
+    for(int year = 0; year < numYears; ++year) {
+      sum = sum + poles.equatorialNorthPole(jdStart + year * AstroUtil.DAYS_PER_JULIAN_YEAR, n)[2];
+    }
+    LogUtil.log("Equatorial pole every year, " + numYears + " years, from the table: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    start = System.nanoTime();
+    for(int year = 0; year < numYears; year = year + 100) {
+      sum = sum + precession.equatorialNorthPole(jdStart + year * AstroUtil.DAYS_PER_JULIAN_YEAR).z;
+    }
+    LogUtil.log("Equatorial pole every 100 years, direct: " + (System.nanoTime() - start) / 1_000_000 + " ms. Checksum: " + sum);
+
+    double jd = GregorianCal.jdForGreenwich(-12000, 1, 1.0);
+    LogUtil.log("Equatorial pole in 12,000 BC, direct: " + precession.equatorialNorthPole(jd) + " table: " + vector(poles.equatorialNorthPole(jd, n)));
+  }
+
+  private static String vector(double[] v) {
+    return "x:" + v[0] + " y:" + v[1] + " z:" + v[2];
+  }
+}
@@ -0,0 +1,182 @@
+package astropdf.astro.precession;
+
+import static astropdf.math.Maths.radsToDegs;
+
+import astropdf.astro.coords.Position;
+import astropdf.astro.time.GregorianCal;
+import astropdf.math.Matrix;
+import astropdf.util.LogUtil;
+
+/**
+ The precession from J2000 over a span of time, interpolated from values computed in advance.
+
+ <P>Precession changes very slowly. Over a few days, the elements of the rotation matrix
+ are very nearly quadratic in time. This class computes the rotation matrix and the obliquity
+ at evenly spaced nodes, using {@link LongTermPrecession}, and then interpolates between them, using the 3 nearest nodes.
+ This is much faster than computing the precession from scratch, when many times are needed (a table for every day, or every hour, of a year).
+
+ <P>The error of the interpolation is measured by {@link #maxInterpolationError()}.
+ With nodes every 1 to 10 days, the error is near the level of rounding error (about 1e-15 radians).
+
+ <P>This class is immutable, and can be shared between threads, and between the code for
+ the Sun, the stars, and sidereal time (see {@link astropdf.astro.planets.EpochContext}).
+*/
+public final class PrecessionCache {
+
+  /** The default spacing of the nodes, in days - {@value}. */
+  public static final double DEFAULT_SPACING = 5.0;
+
+  /** The maximum number of nodes, to bound the memory used - {@value}. */
+  public static final int MAX_NODES = 100_000;
+
+  /**
+   Compute the precession at the nodes.
+   @param jdStart the start of the span.
+   @param jdEnd the end of the span.
+   @param nodeSpacing the number of days between nodes, usually 1 to 10 days.
+  */
+  public PrecessionCache(double jdStart, double jdEnd, double nodeSpacing) {
+    if (jdEnd <= jdStart || nodeSpacing <= 0) {
+      throw new IllegalArgumentException("Bad span or node spacing: " + jdStart + ".." + jdEnd + " " + nodeSpacing);
+    }
+    int n = (int)Math.ceil((jdEnd - jdStart) / nodeSpacing) + 1;
+    n = Math.max(n, 3); //interpolation needs 3 nodes
+    if (n > MAX_NODES) {
+      throw new IllegalArgumentException("Too many nodes: " + n + ". Use a shorter span, or a larger node spacing.");
+    }
+    this.jdStart = jdStart;
+    this.jdEnd = jdEnd;
+    this.spacing = nodeSpacing;
+    this.numNodes = n;
+    this.values = new double[n * STRIDE];
+    for(int node = 0; node < n; ++node) {
+      LongTermPrecession.Data data = precession.data(jdStart + node * nodeSpacing);
+      System.arraycopy(data.rotation, 0, values, node * STRIDE, 9);
+      values[node * STRIDE + OBLIQUITY] = data.obliquity;
+    }
+  }
+
+  /** Start of the span. */
+  public double jdStart() { return jdStart; }
+  /** End of the span. */
+  public double jdEnd() { return jdEnd; }
+  /** The number of days between nodes. */
+  public double nodeSpacing() { return spacing; }
+  /** The number of nodes. */
+  public int numNodes() { return numNodes; }
+
+  /**
+   The rotation matrix from J2000 to the mean equator and equinox of date, in row-major order.
+   As in {@link LongTermPrecession#rotationMatrix(double)}.
+   @param result receives the 9 elements of the matrix. It's also the return value.
+  */
+  public double[] rotation(double jd, double[] result) {
+    int at = centralNode(jd);
+    double u = (jd - (jdStart + at * spacing)) / spacing;
+    for(int k = 0; k < 9; ++k) {
+      result[k] = interpolate(at, k, u);
+    }
+    return result;
+  }
+
+  /** As in {@link LongTermPrecession#rotationMatrix(double)}. */
+  public Matrix rotationMatrix(double jd) {
+    return LongTermPrecession.matrix(rotation(jd, new double[9]));
+  }
+
+  /** Precess from a J2000 position to the target jd. As in {@link LongTermPrecession#apply(Position, double)}. */
+  public Position apply(Position pos, double jd) {
+    return LongTermPrecession.apply(pos, rotation(jd, new double[9]));
+  }
+
+  /** The mean obliquity of the ecliptic, in radians. As in {@link LongTermPrecession#obliquity(double)}. */
+  public double obliquity(double jd) {
+    int at = centralNode(jd);
+    double u = (jd - (jdStart + at * spacing)) / spacing;
+    return interpolate(at, OBLIQUITY, u);
+  }
+
+  /**
+   The largest difference between the interpolated and the directly computed values, over all elements of the
+   rotation matrix and the obliquity. Measured halfway between each pair of nodes, where the error of the interpolation
+   is largest. The elements of the matrix are direction cosines, so the result is in radians.
+   This is computed the first time it's called, at the cost of one direct computation per node.
+  */
+  public synchronized double maxInterpolationError() {
+    if (maxError == null) {
+      double result = 0.0;
+      double[] interpolated = new double[9];
+      for(int node = 0; node < numNodes - 1; ++node) {
+        double jd = jdStart + (node + 0.5) * spacing;
+        LongTermPrecession.Data exact = precession.data(jd);
+        rotation(jd, interpolated);
+        for(int k = 0; k < 9; ++k) {
+          result = Math.max(result, Math.abs(interpolated[k] - exact.rotation[k]));
+        }
+        result = Math.max(result, Math.abs(obliquity(jd) - exact.obliquity));
+      }
+      maxError = result;
+    }
+    return maxError;
+  }
+
+  // PRIVATE
+
+  private static final int OBLIQUITY = 9;
+  private static final int STRIDE = 10;
+
+  private final LongTermPrecession precession = new LongTermPrecession();
+  private final double jdStart;
+  private final double jdEnd;
+  private final double spacing;
+  private final int numNodes;
+  /** For each node: the 9 elements of the rotation matrix, then the obliquity. */
+  private final double[] values;
+  private Double maxError;
+
+  /** The node nearest the given time, but never the first or last node, since there must be a node on either side. */
+  private int centralNode(double jd) {
+    if (jd < jdStart || jd > jdEnd) {
+      throw new IllegalArgumentException("Time is outside of the span of the cache: " + jd + " not in " + jdStart + ".." + jdEnd);
+    }
+    int result = (int)Math.round((jd - jdStart) / spacing);
+    return Math.min(Math.max(result, 1), numNodes - 2);
+  }
+
+  /**
+   Quadratic through 3 nodes (Stirling's formula).
+   @param u the time, in units of the node spacing, from the central node.
+  */
+  private double interpolate(int at, int k, double u) {
+    double before = values[(at - 1) * STRIDE + k];
+    double middle = values[at * STRIDE + k];
+    double after = values[(at + 1) * STRIDE + k];
+    return middle + u * (after - before) / 2.0 + u * u * (after - 2.0 * middle + before) / 2.0;
+  }
+
+  /** Informal test harness. */
+  public static void main(String... args) {
+    double jdStart = GregorianCal.jdForGreenwich(2025, 1, 1.0);
+    double jdEnd = GregorianCal.jdForGreenwich(2026, 1, 1.0);
+    LongTermPrecession precession = new LongTermPrecession();
+    for(double spacing : new double[] {1.0, DEFAULT_SPACING, 10.0}) {
+      PrecessionCache cache = new PrecessionCache(jdStart, jdEnd, spacing);
+      LogUtil.log("Spacing " + spacing + " days, " + cache.numNodes() + " nodes. Max interpolation error: " + radsToDegs(cache.maxInterpolationError()) * 3600 + " arcsec");
+    }
+    PrecessionCache cache = new PrecessionCache(jdStart, jdEnd, DEFAULT_SPACING);
+    int numTimes = 365 * 24;
+    double[] rotation = new double[9];
+    long start = System.nanoTime();
+    double sum = 0.0;
+    for(int i = 0; i < numTimes; ++i) {
+      sum = sum + precession.data(jdStart + i / 24.0).rotation[0];
+    }
+    long direct = System.nanoTime() - start;
+    start = System.nanoTime();
+    for(int i = 0; i < numTimes; ++i) {
+      sum = sum + cache.rotation(jdStart + i / 24.0, rotation)[0];
+    }
+    long cached = System.nanoTime() - start;
+    LogUtil.log("Every hour for a year. Direct: " + direct / 1_000_000 + "ms, cached: " + cached / 1_000_000 + "ms. Checksum: " + sum);
+  }
+}
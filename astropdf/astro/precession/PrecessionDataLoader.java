@@ -4,7 +4,9 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+import astropdf.util.CoefficientBundle;
 import astropdf.util.DataFileReader;
 import astropdf.util.LogUtil;
 
@@ -16,6 +18,8 @@ import astropdf.util.LogUtil;
  <P>The file content is copy-pasted directly from the underlying paper that defines the algorithm, with minimal changes.
  (Minus sign characters from the PDF file are changed to be acceptable to Java.)
  
+  <P>If the {@link CoefficientBundle} exists, then the data is read from it instead, and the text files aren't parsed.
+ 
   <P>To add another pair of precession parameters:
   <ul>
    <li>add a pair to {@link Param}
@@ -24,22 +28,56 @@ import astropdf.util.LogUtil;
    <li>supply a text file with the data for the periodic terms
   </ul>
 */
-final class PrecessionDataLoader {
+public final class PrecessionDataLoader {
 
   /** Executed once automatically when this class loads. */
   static {
-    LogUtil.log("Populating precession data for periodic terms.");
-    readPeriodicTermData();
+    Map<Param, double[]> periodicTerms = new LinkedHashMap<>();
+    Optional<CoefficientBundle> bundle = CoefficientBundle.instance();
+    if (bundle.isPresent() && bundle.get().has(sectionName(Param.P))) {
+      LogUtil.log("Populating precession data for periodic terms, from the coefficient bundle.");
+      for(Param param : Param.values()) {
+        periodicTerms.put(param, bundle.get().values(sectionName(param))); //no parsing is needed
+      }
+    }
+    else {
+      LogUtil.log("Populating precession data for periodic terms.");
+      Map<Param, List<double[]>> rows = readPeriodicTermData();
+      for(Param param : rows.keySet()) {
+        periodicTerms.put(param, CoefficientBundle.flatten(rows.get(param)));
+      }
+    }
+    PERIODIC_TERMS = periodicTerms;
   }
   
-  /** Return a data structure to the caller containing all periodic terms for all parameters defined in the {@link Param} enumeration. */
-  static Map<Param, List<PeriodicTerm>> periodicTerms() {
-    return PERIODIC_TERMS;
+  /** 
+   All periodic terms for the given parameter, row after row, in the same layout as the {@link CoefficientBundle}.
+   Each row is the cosine amplitude C and the sine amplitude S, in arcseconds, and the period P, in Julian centuries.
+  */
+  static double[] periodicTerms(Param param) {
+    return PERIODIC_TERMS.get(param);
+  }
+  
+  /** The number of items in each row of {@link #periodicTerms(Param)}. */
+  static final int NUM_COLUMNS = 3;
+  
+  /**
+   The data for all precession parameters, parsed from the text data files, as sections of a {@link CoefficientBundle}.
+   Each row is the cosine amplitude C, the sine amplitude S, and the period P of a periodic term.
+   Doesn't change the data used by this class.
+  */
+  public static Map<String, double[][]> bundleSections() {
+    Map<String, double[][]> result = new LinkedHashMap<>();
+    Map<Param, List<double[]>> rows = readPeriodicTermData(); //always from the text files
+    for(Param param : rows.keySet()) {
+      result.put(sectionName(param), rows.get(param).toArray(new double[0][]));
+    }
+    return result;
   }
   
   // PRIVATE 
   
-  private static Map<Param, List<PeriodicTerm>> PERIODIC_TERMS;
+  private static Map<Param, double[]> PERIODIC_TERMS;
 
   /** Mandatory file naming convention. 'P_and_Q.utf8', for example. */
   private static final String SEPARATOR = "_and_";
@@ -81,34 +119,40 @@ final class PrecessionDataLoader {
    Read in tables containing periodic terms.
    <P>Convention: the file name reflects the column order of the two params. 
   */
-  private static void readPeriodicTermData() {
-    PERIODIC_TERMS = new LinkedHashMap<Param, List<PeriodicTerm>>();
+  private static Map<Param, List<double[]>> readPeriodicTermData() {
+    Map<Param, List<double[]>> result = new LinkedHashMap<>();
     for(Param param : Param.values()) {
-      List<PeriodicTerm> periodicTerms = new ArrayList<>();
+      List<double[]> periodicTerms = new ArrayList<>();
       String fileName = fileCorrespondingToThis(param);
       boolean useFirstCol = isFirstColumn(fileName, param);
       DataFileReader reader = new DataFileReader();
       List<String> lines = reader.readFileUTF8(PrecessionDataLoader.class, fileName);
-      //process pairs of lines, two at a time
-      PeriodicTerm periodicTerm = null;
+      //process pairs of lines, two at a time, into C, S, P
+      double[] periodicTerm = null;
       for(String line : lines) {
         if ( isComment(line)) {
           //skip it
         }
         else if (isCosine(line)) {
           //start a new term
-          periodicTerm = new PeriodicTerm(); 
-          periodicTerm.P = chop(line, PERIOD_COLUMN); 
-          periodicTerm.C = chop(line, AMPLITUDE_COLUMN, useFirstCol);
+          periodicTerm = new double[NUM_COLUMNS]; 
+          periodicTerm[2] = chop(line, PERIOD_COLUMN); 
+          periodicTerm[0] = chop(line, AMPLITUDE_COLUMN, useFirstCol);
         }
         else {
           //finish an existing term 
-          periodicTerm.S = chop(line, AMPLITUDE_COLUMN, useFirstCol);
+          periodicTerm[1] = chop(line, AMPLITUDE_COLUMN, useFirstCol);
           periodicTerms.add(periodicTerm); //finished
         }
       }
-      PERIODIC_TERMS.put(param, periodicTerms);
+      result.put(param, periodicTerms);
     }
+    return result;
+  }
+  
+  /** For example, 'precession-epsilon'. */
+  private static String sectionName(Param param) {
+    return "precession-" + param;
   }
   
   private static Double chop(String line, int col, boolean useFirstCol) {
@@ -0,0 +1,109 @@
+package astropdf.astro.precession;
+
+import static astropdf.math.Maths.TWO_PI;
+
+/**
+ The periodic terms for all precession parameters, compiled into primitive arrays, and evaluated together.
+
+ <P>The parameters come in pairs that share the same periods (P and Q, X and Y, p and ε), since each pair
+ comes from the same table in the underlying paper. For each pair, the sine and cosine of 2πT/P are computed
+ only once per period, and then used for both parameters of the pair.
+*/
+final class PrecessionSeries {
+
+  /** The single instance, built from the data in {@link PrecessionDataLoader}. */
+  static PrecessionSeries instance() {
+    return INSTANCE;
+  }
+
+  /**
+   The sums of the periodic terms for all parameters, in a single pass.
+   @param T Julian centuries since J2000.
+   @param result receives the sum for each parameter in arcseconds, indexed by the ordinal of the {@link Param}.
+  */
+  void periodicTerms(double T, double[] result) {
+    for(Pair pair : pairs) {
+      pair.sums(T, result);
+    }
+  }
+
+  /**
+   The sums of the periodic terms for the pair of parameters that contains the given parameter.
+   @param result receives the sums in arcseconds, indexed by the ordinal of the {@link Param}. Only two items are filled in.
+  */
+  void periodicTerms(Param param, double T, double[] result) {
+    for(Pair pair : pairs) {
+      if (pair.first == param || pair.second == param) {
+        pair.sums(T, result);
+        break;
+      }
+    }
+  }
+
+  // PRIVATE
+
+  private static final PrecessionSeries INSTANCE = new PrecessionSeries();
+
+  private final Pair[] pairs;
+
+  private PrecessionSeries() {
+    pairs = new Pair[] {
+      new Pair(Param.P, Param.Q),
+      new Pair(Param.X, Param.Y),
+      new Pair(Param.p, Param.epsilon)
+    };
+  }
+
+  /** Two parameters whose periodic terms have the same periods. */
+  private static final class Pair {
+    /** Reads the rows of C, S, P from {@link PrecessionDataLoader#periodicTerms(Param)}. */
+    Pair(Param first, Param second){
+      this.first = first;
+      this.second = second;
+      double[] a = PrecessionDataLoader.periodicTerms(first);
+      double[] b = PrecessionDataLoader.periodicTerms(second);
+      if (a.length != b.length) {
+        throw new RuntimeException("Precession parameters " + first + " and " + second + " don't have the same number of terms.");
+      }
+      int n = a.length / PrecessionDataLoader.NUM_COLUMNS;
+      frequency = new double[n];
+      C1 = new double[n];
+      S1 = new double[n];
+      C2 = new double[n];
+      S2 = new double[n];
+      for(int i = 0, row = 0; i < n; ++i, row += PrecessionDataLoader.NUM_COLUMNS) {
+        if (a[row + 2] != b[row + 2]) {
+          throw new RuntimeException("Precession parameters " + first + " and " + second + " don't share the same periods.");
+        }
+        frequency[i] = TWO_PI / a[row + 2];
+        C1[i] = a[row];
+        S1[i] = a[row + 1];
+        C2[i] = b[row];
+        S2[i] = b[row + 1];
+      }
+    }
+    Param first;
+    Param second;
+    /** 2π/P, radians per Julian century. */
+    double[] frequency;
+    /** Arcseconds. */
+    double[] C1;
+    double[] S1;
+    double[] C2;
+    double[] S2;
+
+    void sums(double T, double[] result) {
+      double sum1 = 0.0;
+      double sum2 = 0.0;
+      for(int i = 0; i < frequency.length; ++i) {
+        double angle = frequency[i] * T;
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        sum1 = sum1 + C1[i] * cos + S1[i] * sin;
+        sum2 = sum2 + C2[i] * cos + S2[i] * sin;
+      }
+      result[first.ordinal()] = sum1;
+      result[second.ordinal()] = sum2;
+    }
+  }
+}
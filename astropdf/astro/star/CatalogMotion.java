@@ -0,0 +1,269 @@
+package astropdf.astro.star;
+
+import static astropdf.util.LogUtil.log;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import astropdf.astro.precession.FrameTransform;
+import astropdf.astro.precession.PrecessionCache;
+import astropdf.astro.time.AstroUtil;
+import astropdf.astro.time.GregorianCal;
+import astropdf.config.Config;
+import astropdf.config.ConfigFromFile;
+import astropdf.math.Maths;
+
+/**
+ Proper motion and precession of a whole {@link StarTable}, to any number of dates.
+
+ <P>The same result as {@link StarCatalog#generateIntermediateStarCatalog(Double)}, but much faster,
+ so that the whole catalog can be moved to thousands of dates per second (a chart of the sky for every year over many centuries,
+ for example):
+ <ul>
+  <li>the space motion of each star (see {@link ProperMotion#spaceMotion(Star)}) is computed only once, in the constructor.
+  After that, proper motion is just the position plus the velocity times the number of days.
+  <li>proper motion and precession are fused in a single pass. Precession is a single matrix for the given date
+  (see {@link FrameTransform}), shared by all stars.
+  <li>nothing is allocated per star. The results go into arrays owned by the caller, which can be re-used for each date.
+  <li>the stars are split into chunks, which are processed in parallel, in the common fork-join pool.
+ </ul>
+
+ <P>As in {@link ProperMotion}, 2D proper motion is used for stars with no positive parallax, or no radial velocity.
+
+ <P>This class is immutable, and can be shared between threads.
+*/
+public final class CatalogMotion {
+
+  /** The positions of all of the stars, for a given date. The rows are in the same order as the {@link StarTable}. */
+  public static final class Positions {
+
+    /** Positions with both angles and unit vectors. */
+    public Positions(int size) {
+      this(size, true);
+    }
+
+    /**
+     Constructor.
+     @param angles if false, only the unit vectors are computed, and ra and dec are null.
+     That's much faster, when the caller only needs the unit vectors (to project the stars onto a chart, for example).
+    */
+    public Positions(int size, boolean angles) {
+      ra = angles ? new double[size] : null;
+      dec = angles ? new double[size] : null;
+      x = new double[size];
+      y = new double[size];
+      z = new double[size];
+    }
+
+    /** The date of these positions. */
+    public double jd;
+    /** Right ascension in radians. Possibly null. */
+    public final double[] ra;
+    /** Declination in radians. Possibly null. */
+    public final double[] dec;
+    /** Unit vector, x-coordinate. */
+    public final double[] x;
+    /** Unit vector, y-coordinate. */
+    public final double[] y;
+    /** Unit vector, z-coordinate. */
+    public final double[] z;
+
+    public int size() {
+      return x.length;
+    }
+  }
+
+  /**
+   Constructor.
+   @param catalog the stars, with their positions at the epoch of the catalog, {@link ProperMotion#J1991_25},
+   and in the J2000 frame (see {@link StarCatalog#catalogTable()}).
+  */
+  public CatalogMotion(StarTable catalog) {
+    int n = catalog.size();
+    this.size = n;
+    this.spaceMotion = new boolean[n];
+    this.px = new double[n];
+    this.py = new double[n];
+    this.pz = new double[n];
+    this.vx = new double[n];
+    this.vy = new double[n];
+    this.vz = new double[n];
+    for(int i = 0; i < n; ++i) {
+      if (ProperMotion.hasSpaceMotion(catalog.parallax[i], catalog.isMissing(i, StarTable.Column.PARALLAX), catalog.isMissing(i, StarTable.Column.RV))) {
+        spaceMotion[i] = true;
+        double[] motion = ProperMotion.spaceMotion(catalog.ra[i], catalog.dec[i], catalog.pmRa[i], catalog.pmDec[i], catalog.parallax[i], catalog.rv[i]);
+        px[i] = motion[0];
+        py[i] = motion[1];
+        pz[i] = motion[2];
+        vx[i] = motion[3];
+        vy[i] = motion[4];
+        vz[i] = motion[5];
+      }
+      else {
+        //2D: ra, dec, and their rates of change, in rads and rads per day
+        double[] rates = ProperMotion.twoDRates(catalog.pmRa[i], catalog.pmDec[i], catalog.dec[i]);
+        px[i] = catalog.ra[i];
+        py[i] = catalog.dec[i];
+        vx[i] = rates[0];
+        vy[i] = rates[1];
+      }
+    }
+  }
+
+  /** The number of stars. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   Move all the stars to the given date, with precession to the mean equator and equinox of date.
+   Returns a new object. To re-use the arrays for many dates, use {@link #apply(FrameTransform, Positions)}.
+  */
+  public Positions positionsAt(double jd) {
+    Positions result = new Positions(size);
+    apply(FrameTransform.builder(jd).precession().build(), result);
+    return result;
+  }
+
+  /** As in {@link #positionsAt(double)}, with the precession interpolated from a cache that covers the date. */
+  public Positions positionsAt(double jd, PrecessionCache cache) {
+    Positions result = new Positions(size);
+    apply(FrameTransform.builder(jd).precession(cache).build(), result);
+    return result;
+  }
+
+  /**
+   Apply proper motion from the catalog epoch to the date of the given transform, and then the transform itself, to all the stars.
+   The transform is usually precession (mean of date), but it can include nutation (true of date).
+   @param result receives the positions. Its size must match the number of stars.
+  */
+  public void apply(FrameTransform frame, Positions result) {
+    if (result.size() != size) {
+      throw new IllegalArgumentException("Size of the result doesn't match the number of stars: " + result.size() + " " + size);
+    }
+    result.jd = frame.jd();
+    double[] m = frame.matrix();
+    if (size <= CHUNK_SIZE) {
+      apply(m, frame.jd() - ProperMotion.J1991_25, result, 0, size);
+    }
+    else {
+      ForkJoinPool.commonPool().invoke(new Chunk(m, frame.jd() - ProperMotion.J1991_25, result, 0, size));
+    }
+  }
+
+  // PRIVATE
+
+  /** The number of stars processed by a single task. */
+  private static final int CHUNK_SIZE = 1024;
+
+  private final int size;
+  /** True for 3D proper motion. */
+  private final boolean[] spaceMotion;
+  /** 3D: the position in AU, at the catalog epoch. 2D: ra and dec in radians; pz is not used. */
+  private final double[] px, py, pz;
+  /** 3D: the velocity in AU per day. 2D: the rate of change of ra and dec, in radians per day; vz is not used. */
+  private final double[] vx, vy, vz;
+
+  /** The kernel. Proper motion, then the rotation matrix m, for the stars start..end-1. */
+  private void apply(double[] m, double days, Positions result, int start, int end) {
+    double m0 = m[0], m1 = m[1], m2 = m[2];
+    double m3 = m[3], m4 = m[4], m5 = m[5];
+    double m6 = m[6], m7 = m[7], m8 = m[8];
+    double[] ra = result.ra;
+    double[] dec = result.dec;
+    double[] x = result.x;
+    double[] y = result.y;
+    double[] z = result.z;
+    for(int i = start; i < end; ++i) {
+      double ux, uy, uz;
+      if (spaceMotion[i]) {
+        ux = px[i] + vx[i] * days;
+        uy = py[i] + vy[i] * days;
+        uz = pz[i] + vz[i] * days;
+        double norm = 1.0 / Math.sqrt(ux*ux + uy*uy + uz*uz);
+        ux = ux * norm;
+        uy = uy * norm;
+        uz = uz * norm;
+      }
+      else {
+        double α = px[i] + vx[i] * days;
+        double δ = py[i] + vy[i] * days;
+        double cosδ = Math.cos(δ);
+        ux = cosδ * Math.cos(α);
+        uy = cosδ * Math.sin(α);
+        uz = Math.sin(δ);
+      }
+      double xi = m0*ux + m1*uy + m2*uz;
+      double yi = m3*ux + m4*uy + m5*uz;
+      double zi = m6*ux + m7*uy + m8*uz;
+      x[i] = xi;
+      y[i] = yi;
+      z[i] = zi;
+      if (ra != null) {
+        ra[i] = Maths.atan3(yi, xi);
+        dec[i] = Math.atan2(zi, Math.sqrt(xi*xi + yi*yi)); //much faster than asin
+      }
+    }
+  }
+
+  /** Split the stars in halves, until they're small enough to process directly. */
+  private final class Chunk extends RecursiveAction {
+    Chunk(double[] m, double days, Positions result, int start, int end){
+      this.m = m;
+      this.days = days;
+      this.result = result;
+      this.start = start;
+      this.end = end;
+    }
+    @Override protected void compute() {
+      if (end - start <= CHUNK_SIZE) {
+        apply(m, days, result, start, end);
+      }
+      else {
+        int middle = (start + end) >>> 1;
+        invokeAll(new Chunk(m, days, result, start, middle), new Chunk(m, days, result, middle, end));
+      }
+    }
+    private static final long serialVersionUID = 1L;
+    private final double[] m;
+    private final double days;
+    private final Positions result;
+    private final int start;
+    private final int end;
+  }
+
+  /** Informal test harness. Needs the config file. Compares with the star catalog, then measures the speed. */
+  public static void main(String... args) throws Exception {
+    Config config = new ConfigFromFile().init();
+    double jd = GregorianCal.jdForGreenwich(config.year(), 1, 1.0);
+    StarCatalog catalog = new StarCatalog(config);
+    catalog.generateIntermediateStarCatalog(jd);
+    StarTable target = catalog.table();
+    CatalogMotion motion = new CatalogMotion(catalog.catalogTable());
+
+    Positions positions = motion.positionsAt(jd);
+    double maxDiff = 0.0;
+    for(int i = 0; i < positions.size(); ++i) {
+      double Δα = Math.abs(Maths.in2pi(positions.ra[i] - target.ra[i] + Math.PI) - Math.PI) * Math.cos(target.dec[i]);
+      double Δδ = Math.abs(positions.dec[i] - target.dec[i]);
+      maxDiff = Math.max(maxDiff, Math.max(Δα, Δδ));
+    }
+    log("Max difference from the star catalog, for " + config.year() + ": " + Maths.radsToDegs(maxDiff) * 3600 + " arcsec");
+
+    //one date per year, for 10,000 years, re-using the same arrays
+    int numDates = 10_000;
+    double jdStart = GregorianCal.jdForGreenwich(-5000, 1, 1.0);
+    Positions unitVectors = new Positions(motion.size(), false);
+    for(int run = 0; run < 3; ++run) {
+      for(Positions result : new Positions[] {positions, unitVectors}) {
+        long start = System.nanoTime();
+        for(int i = 0; i < numDates; ++i) {
+          motion.apply(FrameTransform.builder(jdStart + i * AstroUtil.DAYS_PER_JULIAN_YEAR).precession().build(), result);
+        }
+        long elapsed = System.nanoTime() - start;
+        String what = result.ra == null ? "unit vectors only" : "with ra and dec";
+        log(numDates + " dates, " + motion.size() + " stars, " + what + ": " + elapsed / 1_000_000 + " ms, " + (long)(numDates / (elapsed / 1.0E9)) + " dates per second");
+      }
+    }
+  }
+}
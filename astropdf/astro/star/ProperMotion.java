@@ -10,7 +10,6 @@ import static astropdf.astro.time.AstroUtil.angularSeparation;
 import astropdf.astro.coords.Position;
 import astropdf.astro.precession.XYZ;
 import astropdf.math.Maths;
-import astropdf.math.Matrix;
 import astropdf.math.Vector;
 
 /** 
@@ -64,10 +63,66 @@ public final class ProperMotion {
    The star's proper motion is in arcseconds, and its position is in rads. 
   */
   public double applyTo(Star star) {
-    boolean hasAllData = star.PARALLAX != null && star.PARALLAX > 0 && star.RADIAL_VELOCITY != null;
-    double result = hasAllData ? threeD(star) : twoD(star);
+    double result = hasSpaceMotion(star) ? threeD(star) : twoD(star);
     return result;
   }
+  
+  /** Return true only if the star has the data for 3D proper motion: a positive parallax, and a radial velocity. */
+  public static boolean hasSpaceMotion(Star star) {
+    return hasSpaceMotion(star.PARALLAX == null ? 0.0 : star.PARALLAX, star.PARALLAX == null, star.RADIAL_VELOCITY == null);
+  }
+
+  /** As in {@link #hasSpaceMotion(Star)}, but for values taken from a {@link StarTable}, where missing values are flagged separately. */
+  static boolean hasSpaceMotion(double parallax, boolean parallaxMissing, boolean radialVelocityMissing) {
+    return !parallaxMissing && parallax > 0 && !radialVelocityMissing;
+  }
+
+  /**
+   The rates of change of ra and dec for 2D proper motion, in radians per day.
+   Note the factor for declination, and the behavior near the pole.
+   @param pmRa arcseconds per year, times cos(dec), as in {@link Star#PROPER_MOTION_RA}.
+   @param pmDec arcseconds per year.
+   @param dec radians.
+  */
+  static double[] twoDRates(double pmRa, double pmDec, double dec) {
+    return new double[] {arcsecPerYearToRadsPerDay(pmRa) / Math.cos(dec), arcsecPerYearToRadsPerDay(pmDec)};
+  }
+  
+  /**
+   The position and velocity of the star, in equatorial rectangular coordinates, at the time of its current position.
+   Returns x, y, z in AU, and then the velocity in each direction, in AU per day.
+   The position after N days is simply the position plus N times the velocity.
+   The star must have the data for 3D proper motion; see {@link #hasSpaceMotion(Star)}.
+  */
+  public static double[] spaceMotion(Star star) {
+    return spaceMotion(star.RA, star.DEC, star.PROPER_MOTION_RA, star.PROPER_MOTION_DEC, star.PARALLAX, star.RADIAL_VELOCITY);
+  }
+
+  /** As in {@link #spaceMotion(Star)}, but for values taken from a {@link StarTable}. */
+  static double[] spaceMotion(double ra, double dec, double pmRa, double pmDec, double parallax, double radialVelocity) {
+    double pRads = Maths.arcsecToRads(parallax); //rads
+    double r = 1/pRads; //AU
+    double cosRA = cos(ra);
+    double sinRA = sin(ra);
+    double cosDEC = cos(dec);
+    double sinDEC = sin(dec);
+    
+    //convert proper motion (arcsec/year) and radial velocity (km/s) to units of AU/day
+    double pmRA = Maths.arcsecToRads(pmRa) / (DAYS_PER_JULIAN_YEAR * pRads);
+    double pmDEC = Maths.arcsecToRads(pmDec)/ (DAYS_PER_JULIAN_YEAR * pRads);
+    double rDot = (SECONDS_PER_DAY * radialVelocity)/KM_PER_AU; //from km/s
+    
+    //two simple rotations are needed in order to get the components (in a rotated system of coords) 
+    //into the same rectilinear coordinate system as the position vector
+    return new double[] {
+      r * cosDEC * cosRA,
+      r * cosDEC * sinRA,
+      r * sinDEC,
+      -sinRA * pmRA  - cosRA*sinDEC * pmDEC  + cosRA*cosDEC * rDot,
+       cosRA * pmRA  - sinRA*sinDEC * pmDEC  + sinRA*cosDEC * rDot,
+                            cosDEC * pmDEC  +       sinDEC * rDot
+    };
+  }
 
   // PRIVATE 
   
@@ -84,38 +139,25 @@ public final class ProperMotion {
   
   /** Classical 2D proper motion across the sky. Returns arcseconds. */
   private double twoD(Star star) {
-    //note the factor for declination! note as well the behavior near the pole:
-    double years = julianYears();
-    double Δα = (star.PROPER_MOTION_RA * years)/Math.cos(star.DEC); //arcsecs
-    double Δδ = star.PROPER_MOTION_DEC * years; //arcsecs
-    star.RA = star.RA + Maths.degToRads(Δα/3600.0); //no int div
-    star.DEC = star.DEC + Maths.degToRads(Δδ/3600.0); //no int div
+    double[] rates = twoDRates(star.PROPER_MOTION_RA, star.PROPER_MOTION_DEC, star.DEC);
+    double days = julianDays();
+    star.RA = star.RA + rates[0] * days;
+    star.DEC = star.DEC + rates[1] * days;
     
+    double years = julianYears();
     double result = Math.sqrt(Math.pow(star.PROPER_MOTION_RA * years, 2) + Math.pow(star.PROPER_MOTION_DEC * years, 2)); //arcsecs
     return result; //arcsecs
   }
   
+  private static double arcsecPerYearToRadsPerDay(double arcsecPerYear) {
+    return Maths.degToRads(arcsecPerYear / 3600.0) / DAYS_PER_JULIAN_YEAR;
+  }
+  
   /**  3D proper motion. Returns arcseconds. */
   private double threeD(Star star) {
-    double pRads = Maths.arcsecToRads(star.PARALLAX); //rads
-    double r = 1/pRads; //AU
-    Vector u0 = XYZ.xyzFrom(new Position(star.RA, star.DEC), r); //AU, equatorial rectangular coords
-    
-    //convert proper motion (arcsec/year) and radial velocity (km/s) to units of AU/day
-    double pmRA = Maths.arcsecToRads(star.PROPER_MOTION_RA) / (DAYS_PER_JULIAN_YEAR * pRads);
-    double pmDEC = Maths.arcsecToRads(star.PROPER_MOTION_DEC)/ (DAYS_PER_JULIAN_YEAR * pRads);
-    
-    double rDot = (SECONDS_PER_DAY * star.RADIAL_VELOCITY)/KM_PER_AU; //from km/s
-    Vector velocityComponents = new Vector(pmRA, pmDEC, rDot); // AU/day, in weird rotated system of coords
-    
-    //two simple rotations are needed in order to get the components into the same rectilinear coordinate system as the position vector u0
-    Vector row1 = new Vector( -sin(star.RA),   -cos(star.RA)*sin(star.DEC),   cos(star.RA)*cos(star.DEC));
-    Vector row2 = new Vector(  cos(star.RA),   -sin(star.RA)*sin(star.DEC),   sin(star.RA)*cos(star.DEC));
-    Vector row3 = new Vector(   0,                  cos(star.DEC),                   sin(star.DEC));
-    Matrix rotations = new Matrix(row1, row2, row3);
-    Vector udot0 = rotations.times(velocityComponents); //  AU/day, in 'standard' coordinates with axes in the right direction
-
-    Vector u2 = u0.plus(udot0.times(julianDays()));
+    double[] motion = spaceMotion(star);
+    double days = julianDays();
+    Vector u2 = new Vector(motion[0] + motion[3] * days, motion[1] + motion[4] * days, motion[2] + motion[5] * days);
     Position newPos = XYZ.positionFrom(u2);
     Position oldPos = new Position(star.RA, star.DEC);
     
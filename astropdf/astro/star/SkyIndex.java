@@ -0,0 +1,394 @@
+package astropdf.astro.star;
+
+import static astropdf.util.LogUtil.log;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import astropdf.astro.time.GregorianCal;
+import astropdf.config.Config;
+import astropdf.config.ConfigFromFile;
+import astropdf.math.Maths;
+
+/**
+ Find stars by their position on the sky, without scanning the whole catalog.
+
+ <P>The sky is cut into zones of declination, each {@value #DEFAULT_ZONE_HEIGHT_DEGS} degrees high by default.
+ In each zone, the stars are sorted by right ascension. A query finds the zones it touches, and then the range of right ascension in
+ each zone, with a binary search. Only the stars in those ranges are examined one by one.
+
+ <P>Stars move (see {@link StarCatalog}), so an index is only valid for a single date.
+ Building an index is cheap: a single sort of the whole catalog. The usual thing is to build a new index for
+ each date, from the output of {@link CatalogMotion}, or from {@link StarCatalog#table()}.
+
+ <P>The results of queries are row numbers in the table from which the index was built.
+ All angles are in radians. A magnitude cutoff includes stars whose magnitude is less than or equal to the cutoff.
+
+ <P>This class is immutable, and can be shared between threads.
+*/
+public final class SkyIndex {
+
+  /** The default height of each zone of declination, in degrees - {@value}. */
+  public static final double DEFAULT_ZONE_HEIGHT_DEGS = 1.0;
+
+  /** Index the stars in the given table, using the positions in the table. */
+  public static SkyIndex of(StarTable table) {
+    return new SkyIndex(table.ra, table.dec, table.mag, Maths.degToRads(DEFAULT_ZONE_HEIGHT_DEGS));
+  }
+
+  /** Index the stars in the given table, using the positions computed for some date. */
+  public static SkyIndex of(CatalogMotion.Positions positions, StarTable table) {
+    if (positions.ra == null) {
+      throw new IllegalArgumentException("The positions don't include ra and dec.");
+    }
+    return new SkyIndex(positions.ra, positions.dec, table.mag, Maths.degToRads(DEFAULT_ZONE_HEIGHT_DEGS));
+  }
+
+  /**
+   Constructor. The arrays all have the same length, and are not retained.
+   @param zoneHeight in radians. There can be at most {@value #MAX_ZONES} zones.
+  */
+  public SkyIndex(double[] ra, double[] dec, double[] mag, double zoneHeight) {
+    int n = ra.length;
+    if (dec.length != n || mag.length != n) {
+      throw new IllegalArgumentException("Arrays don't have the same length: " + n + " " + dec.length + " " + mag.length);
+    }
+    numZones = (int)Math.ceil(Math.PI / zoneHeight);
+    if (zoneHeight <= 0 || numZones > MAX_ZONES) {
+      throw new IllegalArgumentException("Zone height is too small: " + zoneHeight);
+    }
+    this.zoneHeight = zoneHeight;
+
+    //sort on a single key: zone, then ra, then row
+    long[] keys = new long[n];
+    for(int row = 0; row < n; ++row) {
+      double α = Maths.in2pi(ra[row]);
+      keys[row] = ((long)zoneOf(dec[row]) << ZONE_SHIFT) | ((long)quantized(α) << RA_SHIFT) | row;
+    }
+    Arrays.sort(keys);
+
+    zoneStart = new int[numZones + 1];
+    this.rows = new int[n];
+    this.entryForRow = new int[n];
+    this.raQuantized = new int[n];
+    this.mag = new double[n];
+    this.ra = new double[n];
+    this.dec = new double[n];
+    this.x = new double[n];
+    this.y = new double[n];
+    this.z = new double[n];
+    for(int i = 0; i < n; ++i) {
+      int row = (int)(keys[i] & ROW_MASK);
+      rows[i] = row;
+      entryForRow[row] = i;
+      raQuantized[i] = (int)((keys[i] >>> RA_SHIFT) & RA_MASK);
+      ++zoneStart[(int)(keys[i] >>> ZONE_SHIFT) + 1];
+      this.mag[i] = mag[row];
+      this.ra[i] = Maths.in2pi(ra[row]);
+      this.dec[i] = dec[row];
+      double cosδ = Math.cos(dec[row]);
+      x[i] = cosδ * Math.cos(ra[row]);
+      y[i] = cosδ * Math.sin(ra[row]);
+      z[i] = Math.sin(dec[row]);
+    }
+    for(int zone = 0; zone < numZones; ++zone) {
+      zoneStart[zone + 1] = zoneStart[zone + 1] + zoneStart[zone];
+    }
+  }
+
+  /** The number of stars in the index. */
+  public int size() {
+    return rows.length;
+  }
+
+  /**
+   All stars within the given angular distance of a point.
+   @param radius in radians, 0..pi.
+   @param maxMag include only stars at least this bright.
+   @return row numbers, in no particular order.
+  */
+  public int[] cone(double ra, double dec, double radius, double maxMag) {
+    IntStream.Builder result = IntStream.builder();
+    double[] center = unitVector(ra, dec);
+    double minCos = Math.cos(radius);
+    double raWidth = raHalfWidth(dec, radius);
+    for(int zone = zoneOf(dec - radius); zone <= zoneOf(dec + radius); ++zone) {
+      for(double[] span : raSpans(ra - raWidth, ra + raWidth)) {
+        for(int i = from(zone, span[0]); i < to(zone, span[1]); ++i) {
+          if (mag[i] <= maxMag && x[i]*center[0] + y[i]*center[1] + z[i]*center[2] >= minCos) {
+            result.add(rows[i]);
+          }
+        }
+      }
+    }
+    return result.build().toArray();
+  }
+
+  /**
+   All stars in a range of right ascension and declination.
+   @param raMin start of the range of right ascension. If greater than raMax, then the range wraps around through 0h.
+   If raMax - raMin is 2pi or more, then the range is the whole circle.
+   @param maxMag include only stars at least this bright.
+   @return row numbers, in no particular order.
+  */
+  public int[] rectangle(double raMin, double raMax, double decMin, double decMax, double maxMag) {
+    if (decMax < decMin) {
+      throw new IllegalArgumentException("Declination range is backwards: " + decMin + " " + decMax);
+    }
+    IntStream.Builder result = IntStream.builder();
+    double[][] spans;
+    if (raMax - raMin >= Maths.TWO_PI) {
+      spans = new double[][] {{0, Maths.TWO_PI}}; //before normalizing, which would take 2pi to 0
+    }
+    else {
+      double start = Maths.in2pi(raMin);
+      double end = Maths.in2pi(raMax);
+      spans = start <= end ? new double[][] {{start, end}} : new double[][] {{start, Maths.TWO_PI}, {0, end}};
+    }
+    for(int zone = zoneOf(decMin); zone <= zoneOf(decMax); ++zone) {
+      for(double[] span : spans) {
+        for(int i = from(zone, span[0]); i < to(zone, span[1]); ++i) {
+          if (mag[i] <= maxMag && dec[i] >= decMin && dec[i] <= decMax && ra[i] >= span[0] && ra[i] <= span[1]) {
+            result.add(rows[i]);
+          }
+        }
+      }
+    }
+    return result.build().toArray();
+  }
+
+  /**
+   The stars nearest to a point.
+   @param count the maximum number of stars to return.
+   @param maxMag include only stars at least this bright.
+   @return row numbers, nearest first. Fewer than count, only if there aren't enough stars at least as bright as maxMag.
+  */
+  public int[] nearest(double ra, double dec, int count, double maxMag) {
+    if (count <= 0 || size() == 0) {
+      return new int[0];
+    }
+    //start with a cone that would hold about the right number of stars, if they were spread evenly; grow it as needed
+    double radius = Math.min(Math.PI, 2.0 * Math.sqrt(4.0 * count / size()));
+    int[] found = cone(ra, dec, radius, maxMag);
+    while (found.length < count && radius < Math.PI) {
+      radius = Math.min(Math.PI, 2.0 * radius);
+      found = cone(ra, dec, radius, maxMag);
+    }
+    //keep the nearest, in order: an insertion sort into a short array
+    double[] center = unitVector(ra, dec);
+    int n = Math.min(count, found.length);
+    int[] result = new int[n];
+    double[] cosines = new double[n];
+    int kept = 0;
+    for(int row : found) {
+      int i = entryForRow[row];
+      double cos = x[i]*center[0] + y[i]*center[1] + z[i]*center[2];
+      if (kept < n || cos > cosines[n - 1]) {
+        int at = Math.min(kept, n - 1);
+        while (at > 0 && cosines[at - 1] < cos) {
+          cosines[at] = cosines[at - 1];
+          result[at] = result[at - 1];
+          --at;
+        }
+        cosines[at] = cos;
+        result[at] = row;
+        kept = Math.min(kept + 1, n);
+      }
+    }
+    return result;
+  }
+
+  // PRIVATE
+
+  /** The maximum number of zones - {@value}. */
+  private static final int MAX_ZONES = 256;
+  /** Right ascension is quantized to this many bits, for sorting only. About 0.08 arcsec. */
+  private static final int RA_BITS = 24;
+  private static final int ROW_BITS = 31;
+  private static final int RA_SHIFT = ROW_BITS;
+  private static final int ZONE_SHIFT = ROW_BITS + RA_BITS;
+  private static final long ROW_MASK = (1L << ROW_BITS) - 1;
+  private static final long RA_MASK = (1L << RA_BITS) - 1;
+
+  private final double zoneHeight;
+  private final int numZones;
+  /** The first entry of each zone; the last item is the size. */
+  private final int[] zoneStart;
+
+  /* One entry per star, in order of zone, then ra. */
+  private final int[] rows;
+  private final int[] raQuantized;
+  private final double[] mag;
+  private final double[] ra;
+  private final double[] dec;
+  private final double[] x;
+  private final double[] y;
+  private final double[] z;
+
+  /** The inverse of rows. */
+  private final int[] entryForRow;
+
+  private int zoneOf(double dec) {
+    int result = (int)Math.floor((dec + Math.PI / 2.0) / zoneHeight);
+    return Math.min(Math.max(result, 0), numZones - 1);
+  }
+
+  /** Monotonic in ra, so that a range of ra is also a range of its quantized values. */
+  private static int quantized(double ra) {
+    int result = (int)(ra / Maths.TWO_PI * (1 << RA_BITS));
+    return Math.min(Math.max(result, 0), (1 << RA_BITS) - 1);
+  }
+
+  /** The first entry in the zone that can have the given ra or more. */
+  private int from(int zone, double ra) {
+    int q = quantized(ra);
+    int lo = zoneStart[zone];
+    int hi = zoneStart[zone + 1];
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (raQuantized[mid] < q) {
+        lo = mid + 1;
+      }
+      else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /** One past the last entry in the zone that can have the given ra or less. */
+  private int to(int zone, double ra) {
+    int q = quantized(ra);
+    int lo = zoneStart[zone];
+    int hi = zoneStart[zone + 1];
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (raQuantized[mid] <= q) {
+        lo = mid + 1;
+      }
+      else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   Half of the range of right ascension covered by a cone.
+   If the cone includes a pole, then it covers all right ascensions.
+  */
+  private static double raHalfWidth(double dec, double radius) {
+    double result = Math.PI;
+    if (Math.abs(dec) + radius < Math.PI / 2.0) {
+      result = Math.asin(Math.min(1.0, Math.sin(radius) / Math.cos(dec)));
+    }
+    return result;
+  }
+
+  /** Split a range of right ascension into 1 or 2 ranges inside 0..2pi. */
+  private static double[][] raSpans(double start, double end) {
+    double[][] result;
+    if (end - start >= Maths.TWO_PI) {
+      result = new double[][] {{0, Maths.TWO_PI}};
+    }
+    else if (start < 0) {
+      result = new double[][] {{start + Maths.TWO_PI, Maths.TWO_PI}, {0, end}};
+    }
+    else if (end > Maths.TWO_PI) {
+      result = new double[][] {{start, Maths.TWO_PI}, {0, end - Maths.TWO_PI}};
+    }
+    else {
+      result = new double[][] {{start, end}};
+    }
+    return result;
+  }
+
+  private static double[] unitVector(double ra, double dec) {
+    return new double[] {Math.cos(dec) * Math.cos(ra), Math.cos(dec) * Math.sin(ra), Math.sin(dec)};
+  }
+
+  /** Informal test harness. Needs the config file. Compares the results with a scan of the whole catalog. */
+  public static void main(String... args) throws Exception {
+    Config config = new ConfigFromFile().init();
+    double jd = GregorianCal.jdForGreenwich(config.year(), 1, 1.0);
+    StarCatalog catalog = new StarCatalog(config);
+    catalog.generateIntermediateStarCatalog(jd);
+    StarTable table = catalog.table();
+
+    long start = System.nanoTime();
+    SkyIndex index = null;
+    for(int i = 0; i < 100; ++i) {
+      index = SkyIndex.of(table);
+    }
+    log("Build the index for " + index.size() + " stars: " + (System.nanoTime() - start) / 100_000 + " µs");
+
+    Random random = new Random(42);
+    int failures = 0;
+    int numQueries = 2000;
+    long indexed = 0;
+    long scanned = 0;
+    for(int q = 0; q < numQueries; ++q) {
+      double ra = random.nextDouble() * Maths.TWO_PI;
+      double dec = Math.asin(2 * random.nextDouble() - 1);
+      double radius = Maths.degToRads(random.nextDouble() * (q % 10 == 0 ? 60 : 5));
+      double maxMag = 3.0 + random.nextDouble() * 4.0;
+
+      start = System.nanoTime();
+      int[] cone = index.cone(ra, dec, radius, maxMag);
+      indexed = indexed + System.nanoTime() - start;
+      start = System.nanoTime();
+      int[] coneScan = scanCone(table, ra, dec, radius, maxMag);
+      scanned = scanned + System.nanoTime() - start;
+      failures = failures + (sameRows(cone, coneScan) ? 0 : 1);
+
+      double decMin = Math.max(-Math.PI / 2, dec - radius);
+      double decMax = Math.min(Math.PI / 2, dec + radius);
+      double raMax = Maths.in2pi(ra + 4 * radius);
+      failures = failures + (sameRows(index.rectangle(ra, raMax, decMin, decMax, maxMag), scanRectangle(table, ra, raMax, decMin, decMax, maxMag)) ? 0 : 1);
+      //the whole circle of right ascension, in a band of declination
+      int[] band = scanRectangle(table, 0, Maths.TWO_PI, decMin, decMax, maxMag);
+      failures = failures + (sameRows(index.rectangle(0, Maths.TWO_PI, decMin, decMax, maxMag), band) ? 0 : 1);
+      failures = failures + (sameRows(index.rectangle(ra, ra + Maths.TWO_PI, decMin, decMax, maxMag), band) ? 0 : 1);
+
+      int[] nearest = index.nearest(ra, dec, 5, maxMag);
+      int[] nearestScan = scanNearest(table, ra, dec, 5, maxMag);
+      failures = failures + (Arrays.equals(nearest, nearestScan) ? 0 : 1);
+    }
+    log(numQueries + " random queries of each kind. Results that don't match a full scan: " + failures);
+    log("Cone search. Index: " + indexed / numQueries / 1000.0 + " µs per query, full scan: " + scanned / numQueries / 1000.0 + " µs per query");
+    int vega = catalog.all().indexOf(catalog.findByProperName("Vega").get());
+    for(int row : index.nearest(table.ra[vega], table.dec[vega], 4, 6.0)) {
+      log("  Near Vega: " + table.row(row));
+    }
+  }
+
+  private static double cosDistance(StarTable table, int row, double ra, double dec) {
+    return Math.sin(dec) * Math.sin(table.dec[row]) + Math.cos(dec) * Math.cos(table.dec[row]) * Math.cos(table.ra[row] - ra);
+  }
+
+  private static int[] scanCone(StarTable table, double ra, double dec, double radius, double maxMag) {
+    return IntStream.range(0, table.size()).filter(row -> table.mag[row] <= maxMag && cosDistance(table, row, ra, dec) >= Math.cos(radius)).toArray();
+  }
+
+  private static int[] scanRectangle(StarTable table, double raMin, double raMax, double decMin, double decMax, double maxMag) {
+    return IntStream.range(0, table.size()).filter(row ->
+      table.mag[row] <= maxMag && table.dec[row] >= decMin && table.dec[row] <= decMax &&
+      (raMin <= raMax ? table.ra[row] >= raMin && table.ra[row] <= raMax : table.ra[row] >= raMin || table.ra[row] <= raMax)
+    ).toArray();
+  }
+
+  private static int[] scanNearest(StarTable table, double ra, double dec, int count, double maxMag) {
+    return IntStream.range(0, table.size()).filter(row -> table.mag[row] <= maxMag).boxed()
+      .sorted((a, b) -> Double.compare(cosDistance(table, b, ra, dec), cosDistance(table, a, ra, dec)))
+      .limit(count).mapToInt(Integer::intValue).toArray();
+  }
+
+  private static boolean sameRows(int[] a, int[] b) {
+    int[] sortedA = a.clone();
+    int[] sortedB = b.clone();
+    Arrays.sort(sortedA);
+    Arrays.sort(sortedB);
+    return Arrays.equals(sortedA, sortedB);
+  }
+}
@@ -9,12 +9,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-import astropdf.astro.coords.Position;
-import astropdf.astro.precession.LongTermPrecession;
+import astropdf.astro.precession.FrameTransform;
 import astropdf.astro.time.AstroUtil;
 import astropdf.config.Config;
 import astropdf.math.Maths;
@@ -52,16 +55,21 @@ public final class StarCatalog {
    <P>If the precessionJd is null, then proper motion and precession are not applied at all.   
   */
   public void generateIntermediateStarCatalog(Double precessionJd) throws IOException {
-    readInRawCatalogData();
+    readInRawCatalogData(raw);
+    addProperNamesTo(raw);
     if (precessionJd != null) {
       log("Applying proper motion / precession to the star catalog. Year: " + config.year());
+      for(Star star : raw) {
+        stars.add(star.copy());
+      }
       applyProperMotion(precessionJd);
       applyPrecession(precessionJd);
     }
     else {
       log("Not applying proper motion / precession or proper motion. Year: " + config.year());
+      stars = raw;
     }
-    addProperNamesToStars();
+    buildIndexes();
     saveToIntermediateFile();
     scanForMissingItems();
   }
@@ -71,6 +79,9 @@ public final class StarCatalog {
    In this project, it's not prudent to filter by geometry, a range of declination, say. That's because there's 
    a high risk of leaving things out: precession and proper motion changes the relative positions a great deal over 
    long time scales. 
+   To filter by geometry, use a {@link SkyIndex} built for the date in question.
+   
+   <P>Returns a new list, in catalog order. When the order doesn't matter, {@link #brighterThan(double)} is much faster.
   */
   public List<Star> filterByMag(Double limitingMag){
     List<Star> result = new ArrayList<>();
@@ -83,37 +94,99 @@ public final class StarCatalog {
     return result;
   }
 
+  /**
+   The stars whose magnitude is less than or equal to the given limit, brightest first.
+   
+   <P>The stars are kept sorted by magnitude, so the result is simply the start of that list, 
+   found with a binary search. Nothing is copied: the result is a read-only view.
+  */
+  public List<Star> brighterThan(double limitingMag) {
+    return byMag.subList(0, countBrighterThan(limitingMag));
+  }
+  
+  /**
+   The stars in bands of magnitude, brightest first, for drawing each band in its own style (the size of the dot, for example).
+   With limits 1, 2, 3, the bands are: magnitude up to 1, over 1 up to 2, and over 2 up to 3.
+   Stars fainter than the last limit are not included. Each band is a read-only view, as in {@link #brighterThan(double)}.
+   @param limits in increasing order.
+  */
+  public List<List<Star>> magnitudeBands(double... limits) {
+    List<List<Star>> result = new ArrayList<>();
+    int start = 0;
+    for(int i = 0; i < limits.length; ++i) {
+      if (i > 0 && limits[i] < limits[i-1]) {
+        throw new IllegalArgumentException("Limits of magnitude bands are not in increasing order: " + Arrays.toString(limits));
+      }
+      int end = countBrighterThan(limits[i]);
+      result.add(byMag.subList(start, end));
+      start = end;
+    }
+    return result;
+  }
+
   /** Return all of the stars in the catalog, with no filter. */
   public List<Star> all(){
     return Collections.unmodifiableList(stars);
   }
   
-  public Optional<Star> findByProperName(String properName) {
-    Optional<Star> result = Optional.empty();
-    for (Star star : stars) {
-      if (star.PROPER_NAME.equalsIgnoreCase(properName)) {
-        result = Optional.of(star);
-      }
+  /** 
+   The same stars as {@link #all()}, in the same order, stored in columns. 
+   Built the first time it's asked for, and then kept. 
+   This is a second copy of the data, alongside the Star objects; the Star objects remain the primary store.
+  */
+  public synchronized StarTable table() {
+    if (table == null) {
+      table = StarTable.from(stars);
     }
-    return result;
+    return table;
   }
   
-  public Optional<Star> findByName(String name) {
-    Optional<Star> result = Optional.empty();
-    for (Star star : stars) {
-      if (star.NAME.equalsIgnoreCase(name)) {
-        result = Optional.of(star);
-      }
+  /** 
+   The same stars as {@link #all()}, in the same order, but with the positions taken directly from the catalog, 
+   before any proper motion or precession. This is the input needed by {@link CatalogMotion}.
+   
+   <P>Built the first time it's asked for, from the stars as they were read from the catalog, and then kept.
+   As with {@link #table()}, this is an extra copy of the data, not a replacement for the Star objects.
+  */
+  public synchronized StarTable catalogTable() {
+    if (catalogTable == null) {
+      catalogTable = StarTable.from(raw);
     }
-    return result;
+    return catalogTable;
+  }
+  
+  /** Find a star by its index in the underlying catalog (see {@link Star#INDEX}). */
+  public Optional<Star> findByIndex(Integer index) {
+    return star(rowForIndex.get(index));
+  }
+  
+  /** Find a star by its proper name, 'Vega' for instance. Ignores case. If more than one star has the name, the last one is returned. */
+  public Optional<Star> findByProperName(String properName) {
+    return properName == null ? Optional.empty() : star(rowForProperName.get(caseFolded(properName)));
+  }
+  
+  /** Find a star by its Bayer or Flamsteed designation, 'β And' for instance. Ignores case. If more than one star has the name, the last one is returned. */
+  public Optional<Star> findByName(String name) {
+    return name == null ? Optional.empty() : star(rowForName.get(caseFolded(name)));
   }
   
   // PRIVATE 
 
   private Config config;
   private List<Star> stars = new ArrayList<>();
+  /* The stars as read from the catalog, before proper motion and precession. The same list as stars, if neither is applied. */
+  private List<Star> raw = new ArrayList<>();
+  private StarTable table;
+  private StarTable catalogTable;
+  /* Lookups; the value is the row number in the list of stars. */
+  private Map<Integer, Integer> rowForIndex = new HashMap<>();
+  private Map<String, Integer> rowForName = new HashMap<>();
+  private Map<String, Integer> rowForProperName = new HashMap<>();
+  /* All stars sorted by magnitude, brightest first, and their magnitudes, in the same order. */
+  private List<Star> byMag = Collections.emptyList();
+  private double[] sortedMags = new double[0];
   
-  private void readInRawCatalogData() {
+  private void readInRawCatalogData(List<Star> stars) {
     log("Read in raw catalog.");
     DataFileReader reader = new DataFileReader();
     List<String> lines = reader.readFileUTF8(this.getClass(), "os-bright-star-catalog-hip.utf8");
@@ -128,7 +201,7 @@ public final class StarCatalog {
     log("Using this number of stars from catalog: " + stars.size());
   }
   
-  private void addProperNamesToStars() {
+  private void addProperNamesTo(List<Star> stars) {
     log("Add proper names to stars.");
     StarName starName = new StarName();
     starName.readData();
@@ -149,6 +222,55 @@ public final class StarCatalog {
     log("Added " + count + " proper names for stars.");
   }
 
+  /** Built once, after the names are known. Later stars with the same name replace earlier ones. */
+  private void buildIndexes() {
+    for(int row = 0; row < stars.size(); ++row) {
+      Star star = stars.get(row);
+      rowForIndex.putIfAbsent(star.INDEX, row);
+      rowForName.put(caseFolded(star.NAME), row);
+      rowForProperName.put(caseFolded(star.PROPER_NAME), row);
+    }
+    List<Star> sorted = new ArrayList<>(stars);
+    sorted.sort(Comparator.comparing(Star::getMagnitude)); //stable: ties stay in catalog order
+    byMag = Collections.unmodifiableList(sorted);
+    sortedMags = new double[sorted.size()];
+    for(int i = 0; i < sortedMags.length; ++i) {
+      sortedMags[i] = sorted.get(i).MAG;
+    }
+  }
+  
+  /** The number of stars whose magnitude is less than or equal to the given limit. A binary search. */
+  private int countBrighterThan(double limitingMag) {
+    int lo = 0;
+    int hi = sortedMags.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (sortedMags[mid] <= limitingMag) {
+        lo = mid + 1;
+      }
+      else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+  
+  /** 
+   Folded one char at a time, in the same way as {@link String#equalsIgnoreCase(String)}, so that two strings have the same 
+   result here exactly when they are equal according to that method. (Folding the whole string would not do: 'ß' becomes "ss".)
+  */
+  private static String caseFolded(String text) {
+    char[] chars = text.toCharArray();
+    for(int i = 0; i < chars.length; ++i) {
+      chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+    }
+    return new String(chars);
+  }
+  
+  private Optional<Star> star(Integer row) {
+    return row == null ? Optional.empty() : Optional.of(stars.get(row));
+  }
+  
   private void saveToIntermediateFile() throws IOException {
     log("Save to an intermediate file. Only needed for dev/debugging purposes.");
     String outputFileName = "stars.utf8"; 
@@ -273,11 +395,22 @@ public final class StarCatalog {
   
   private void applyPrecession(Double precessionJd) {
     log("Applying precession from J2000 to target JD: " + precessionJd);
-    LongTermPrecession precession = new LongTermPrecession();
-    for(Star star : stars) {
-      Position newPos = precession.apply(star.position(), precessionJd);
-      star.RA = newPos.α;
-      star.DEC = newPos.δ;
+    FrameTransform precession = FrameTransform.builder(precessionJd).precession().build();
+    int n = stars.size();
+    double[] x = new double[n];
+    double[] y = new double[n];
+    double[] z = new double[n];
+    for(int i = 0; i < n; ++i) {
+      Star star = stars.get(i);
+      x[i] = Math.cos(star.DEC) * Math.cos(star.RA);
+      y[i] = Math.cos(star.DEC) * Math.sin(star.RA);
+      z[i] = Math.sin(star.DEC);
+    }
+    precession.apply(x, y, z);
+    for(int i = 0; i < n; ++i) {
+      Star star = stars.get(i);
+      star.RA = Maths.atan3(y[i], x[i]);
+      star.DEC = Math.asin(z[i]);
     }
     log("Finished applying precession.");
   }
@@ -0,0 +1,321 @@
+package astropdf.astro.star;
+
+import static astropdf.util.LogUtil.log;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import astropdf.astro.coords.Position;
+import astropdf.astro.time.GregorianCal;
+import astropdf.config.Config;
+import astropdf.config.ConfigFromFile;
+
+/**
+ The star catalog in columns: one primitive array per field, instead of one object per star.
+
+ <P>A pass over the whole catalog (filtering by magnitude, proper motion, precession) reads only the columns it needs,
+ from contiguous memory, with no boxing. That matters more and more as the catalog grows past the few thousand stars of the
+ bright star catalog.
+
+ <P>Some values can be missing from the catalog (radial velocity, most often). A missing value is stored as 0 in its column,
+ and flagged in a bitmask, one byte per row, with one bit per {@link Column}.
+
+ <P>Text fields are dictionary-encoded: each distinct string is stored once, and each row stores an int code.
+ The code for an empty string is always 0.
+
+ <P>A {@link Row} is a view of a single star, in the style of {@link Star}: it holds only its row number, and reads 
+ from the columns of this table, so nothing is copied. Code that needs an actual {@link Star} object can 
+ use {@link Row#toStar()}, which makes a copy.
+
+ <P>This is a side structure, built in addition to the Star objects, not in place of them: 
+ the {@link StarCatalog} keeps its list of Star objects as the primary store, and builds a table from it only when asked 
+ (see {@link StarCatalog#table()} and {@link StarCatalog#catalogTable()}). 
+
+ <P>The columns are public, for speed, but must be treated as read-only.
+*/
+public final class StarTable {
+
+  /** The numeric columns that can have missing values. */
+  public enum Column {
+    RA, DEC, MAG, PM_RA, PM_DEC, PARALLAX, RV;
+
+    /** The bit for this column, in the missing-value bitmask. */
+    public int bit() {
+      return 1 << ordinal();
+    }
+  }
+
+  /** Build a table from the given stars, in the same order. */
+  public static StarTable from(List<Star> stars) {
+    StarTable result = new StarTable(stars.size());
+    Dictionary names = new Dictionary();
+    Dictionary constellations = new Dictionary();
+    Dictionary properNames = new Dictionary();
+    Dictionary hds = new Dictionary();
+    for(int i = 0; i < stars.size(); ++i) {
+      Star star = stars.get(i);
+      result.hip[i] = star.INDEX;
+      result.ra[i] = result.value(i, Column.RA, star.RA);
+      result.dec[i] = result.value(i, Column.DEC, star.DEC);
+      result.mag[i] = result.value(i, Column.MAG, star.MAG);
+      result.pmRa[i] = result.value(i, Column.PM_RA, star.PROPER_MOTION_RA);
+      result.pmDec[i] = result.value(i, Column.PM_DEC, star.PROPER_MOTION_DEC);
+      result.parallax[i] = result.value(i, Column.PARALLAX, star.PARALLAX);
+      result.rv[i] = result.value(i, Column.RV, star.RADIAL_VELOCITY);
+      result.nameCode[i] = names.code(star.NAME);
+      result.constellationCode[i] = constellations.code(star.getConstellationAbbr());
+      result.properNameCode[i] = properNames.code(star.PROPER_NAME);
+      result.hdCode[i] = hds.code(star.HD_DESIGNATION);
+    }
+    result.names = names.values();
+    result.constellations = constellations.values();
+    result.properNames = properNames.values();
+    result.hds = hds.values();
+    return result;
+  }
+
+  /** Hipparcos identifier (as in {@link Star#INDEX}). */
+  public final int[] hip;
+  /** Right ascension in radians. */
+  public final double[] ra;
+  /** Declination in radians. */
+  public final double[] dec;
+  /** Visual magnitude. */
+  public final double[] mag;
+  /** Proper motion in right ascension, times cos(dec). Arcseconds per year. */
+  public final double[] pmRa;
+  /** Proper motion in declination. Arcseconds per year. */
+  public final double[] pmDec;
+  /** Parallax in arcseconds. Can be negative, as in {@link Star#PARALLAX}. */
+  public final double[] parallax;
+  /** Heliocentric radial velocity in km/s. */
+  public final double[] rv;
+  /** One byte per row, with the bits of the {@link Column}s whose values are missing. */
+  public final byte[] missing;
+
+  /** The number of stars. */
+  public int size() {
+    return hip.length;
+  }
+
+  /** Return true only if the given value is missing from the catalog. */
+  public boolean isMissing(int row, Column column) {
+    return (missing[row] & column.bit()) != 0;
+  }
+
+  /** Bayer or Flamsteed designation, as in {@link Star#NAME}. Possibly empty, never null. */
+  public String name(int row) {
+    return names[nameCode[row]];
+  }
+
+  /** For example, 'Peg' for Pegasus. Possibly empty, never null. */
+  public String constellationAbbr(int row) {
+    return constellations[constellationCode[row]];
+  }
+
+  /** 'Vega', for instance. Possibly empty, never null. */
+  public String properName(int row) {
+    return properNames[properNameCode[row]];
+  }
+
+  /** Identifier in the Henry Draper catalog. Possibly empty, never null. */
+  public String hdDesignation(int row) {
+    return hds[hdCode[row]];
+  }
+
+  /**
+   The code of the constellation of each row. Stars in the same constellation have the same code.
+   Returns a new array.
+  */
+  public int[] constellationCodes() {
+    return constellationCode.clone();
+  }
+
+  /** The number of distinct constellation abbreviations (including the empty string, for stars with no designation). */
+  public int numConstellations() {
+    return constellations.length;
+  }
+
+  /** A view of a single row. */
+  public Row row(int row) {
+    if (row < 0 || row >= size()) {
+      throw new IllegalArgumentException("No such row: " + row + ". Size: " + size());
+    }
+    return new Row(row);
+  }
+
+  /** A read-only view of all of the rows, in order. */
+  public List<Row> rows() {
+    return new AbstractList<Row>() {
+      @Override public Row get(int index) {
+        return row(index);
+      }
+      @Override public int size() {
+        return StarTable.this.size();
+      }
+    };
+  }
+
+  /** A single row of the table. Nothing is copied: the values are read from the columns of the table, when asked for. */
+  public final class Row {
+
+    /** The row number in the table. */
+    public int index() { return row; }
+
+    public int hip() { return hip[row]; }
+    public double ra() { return ra[row]; }
+    public double dec() { return dec[row]; }
+    public double mag() { return mag[row]; }
+    public double pmRa() { return pmRa[row]; }
+    public double pmDec() { return pmDec[row]; }
+    public double parallax() { return parallax[row]; }
+    public double rv() { return rv[row]; }
+    public boolean isMissing(Column column) { return StarTable.this.isMissing(row, column); }
+    public String name() { return StarTable.this.name(row); }
+    public String constellationAbbr() { return StarTable.this.constellationAbbr(row); }
+    public String properName() { return StarTable.this.properName(row); }
+    public String hdDesignation() { return StarTable.this.hdDesignation(row); }
+
+    public Position position() {
+      return new Position(ra[row], dec[row]);
+    }
+
+    /** A new {@link Star} object, with the same data as this row. Missing values are null, as in the original. */
+    public Star toStar() {
+      Star result = new Star();
+      result.INDEX = hip[row];
+      result.NAME = name();
+      result.RA = boxed(Column.RA, ra);
+      result.DEC = boxed(Column.DEC, dec);
+      result.MAG = boxed(Column.MAG, mag);
+      result.PROPER_NAME = properName();
+      result.PROPER_MOTION_RA = boxed(Column.PM_RA, pmRa);
+      result.PROPER_MOTION_DEC = boxed(Column.PM_DEC, pmDec);
+      result.PARALLAX = boxed(Column.PARALLAX, parallax);
+      result.RADIAL_VELOCITY = boxed(Column.RV, rv);
+      result.HD_DESIGNATION = hdDesignation();
+      return result;
+    }
+
+    @Override public String toString() {
+      return hip() + " " + name() + " " + properName() + " mag " + mag();
+    }
+
+    private final int row;
+
+    private Row(int row) {
+      this.row = row;
+    }
+
+    private Double boxed(Column column, double[] values) {
+      return isMissing(column) ? null : values[row];
+    }
+  }
+
+  // PRIVATE
+
+  private final int[] nameCode;
+  private final int[] constellationCode;
+  private final int[] properNameCode;
+  private final int[] hdCode;
+  private String[] names;
+  private String[] constellations;
+  private String[] properNames;
+  private String[] hds;
+
+  private StarTable(int size) {
+    hip = new int[size];
+    ra = new double[size];
+    dec = new double[size];
+    mag = new double[size];
+    pmRa = new double[size];
+    pmDec = new double[size];
+    parallax = new double[size];
+    rv = new double[size];
+    missing = new byte[size];
+    nameCode = new int[size];
+    constellationCode = new int[size];
+    properNameCode = new int[size];
+    hdCode = new int[size];
+  }
+
+  /** Return the value to store in a column, and flag it if it's missing. */
+  private double value(int row, Column column, Double value) {
+    double result = 0.0;
+    if (value == null) {
+      missing[row] = (byte)(missing[row] | column.bit());
+    }
+    else {
+      result = value;
+    }
+    return result;
+  }
+
+  /** Distinct strings, in the order first seen. The empty string always has code 0. Null is treated as empty. */
+  private static final class Dictionary {
+    Dictionary(){
+      code("");
+    }
+    int code(String value) {
+      String key = value == null ? "" : value;
+      Integer result = codes.get(key);
+      if (result == null) {
+        result = values.size();
+        codes.put(key, result);
+        values.add(key);
+      }
+      return result;
+    }
+    String[] values() {
+      return values.toArray(new String[0]);
+    }
+    private Map<String, Integer> codes = new HashMap<>();
+    private List<String> values = new ArrayList<>();
+  }
+
+  /** Informal test harness. Needs the config file. */
+  public static void main(String... args) throws Exception {
+    Config config = new ConfigFromFile().init();
+    StarCatalog catalog = new StarCatalog(config);
+    catalog.generateIntermediateStarCatalog(GregorianCal.jdForGreenwich(config.year(), 1, 1.0));
+    List<Star> stars = catalog.all();
+    StarTable table = catalog.table();
+    int mismatches = 0;
+    for(Row row : table.rows()) {
+      if (!row.toStar().toString().equals(stars.get(row.index()).toString())) {
+        ++mismatches;
+      }
+    }
+    log("Rows: " + table.size() + ". Rows that don't match the Star objects: " + mismatches);
+    log("Distinct names: " + table.names.length + ", constellations: " + table.constellations.length + ", proper names: " + table.properNames.length);
+    int missingRv = 0;
+    for(int i = 0; i < table.size(); ++i) {
+      missingRv = missingRv + (table.isMissing(i, Column.RV) ? 1 : 0);
+    }
+    log("Missing radial velocity: " + missingRv);
+
+    int reps = 2000;
+    double limit = 4.5;
+    long start = System.nanoTime();
+    int fromObjects = 0;
+    for(int rep = 0; rep < reps; ++rep) {
+      fromObjects = catalog.filterByMag(limit).size();
+    }
+    long objects = System.nanoTime() - start;
+    start = System.nanoTime();
+    int fromColumns = 0;
+    for(int rep = 0; rep < reps; ++rep) {
+      fromColumns = 0;
+      for(int i = 0; i < table.size(); ++i) {
+        if (table.mag[i] <= limit) {
+          ++fromColumns;
+        }
+      }
+    }
+    long columns = System.nanoTime() - start;
+    log("Filter by magnitude " + limit + ", " + reps + " times. Star objects: " + fromObjects + " stars, " + objects / 1000 + " µs. Columns: " + fromColumns + " stars, " + columns / 1000 + " µs.");
+  }
+}
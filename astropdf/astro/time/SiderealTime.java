@@ -7,9 +7,11 @@ import java.time.LocalDateTime;
 import java.time.Month;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.DoubleUnaryOperator;
 
 import astropdf.astro.precession.LongTermPrecession;
 import astropdf.astro.precession.Nutation;
+import astropdf.astro.precession.PrecessionCache;
 import astropdf.config.Config;
 import astropdf.config.ConfigFromFile;
 import astropdf.math.Maths;
@@ -34,23 +36,16 @@ public final class SiderealTime {
    If the year is a leap year, then Feb 29 is included in the result, just like any other day. 
   */
   public List<DailySiderealTime> everyDayOfTheYear(int year){
-    List<DailySiderealTime> result = new ArrayList<>();
-    LocalDateTime day = LocalDateTime.of(year, Month.JANUARY.getValue(), 1, CLOCK_TIME, 0);
     double ε = obliquity(year);
-    while(day.getYear() == year) {
-      double lst = siderealTime(
-        day.getYear(), day.getMonthValue(), day.getDayOfMonth(), day.getHour(), 0, 0, 0, 
-        config.hoursOffsetFromUT(), config.minutesOffsetFromUT(), config.longitude()
-      );
-      double jd = GregorianCal.jdForGreenwich(day.getYear(), day.getMonthValue(), day.getDayOfMonth() + day.getHour()/24.0);
-      lst = lst + nutation(ε, jd);
-      DailySiderealTime localSiderealTimeAt20h = new DailySiderealTime(lst, day.getMonthValue(), day.getDayOfMonth());
-      LogUtil.log("  Apparent sidereal time for "  + day + ", in the configured time zone: " + AstroUtil.radsToTimeString(localSiderealTimeAt20h.getRa()));
-      result.add(localSiderealTimeAt20h);
-      day = day.plusDays(1);
-    }
-    //Util.log("Sidereal time on Jan 01, at 20h (standard time in the configured time zone): " + AstroUtil.radsToTimeString(result.get(0).getRa()));
-    return result;
+    return everyDayOfTheYear(year, jd -> ε);
+  }
+
+  /** 
+   As in {@link #everyDayOfTheYear(int)}, but with the obliquity for each day interpolated from a cache.
+   @param precession must cover the whole year.
+  */
+  public List<DailySiderealTime> everyDayOfTheYear(int year, PrecessionCache precession){
+    return everyDayOfTheYear(year, precession::obliquity);
   }
 
   /**
@@ -65,6 +60,17 @@ public final class SiderealTime {
     return Maths.in2pi(result);
   }
 
+  /** 
+   The mean sidereal time at Greenwich, for the given Julian date (UT). 
+   Returns radians, 0..2pi. Ref: Meeus page 84.
+  */
+  public static double greenwichMeanSiderealTime(double jd) {
+    double T = julianCenturiesSinceJ2000(jd);
+    double result = 280.46061837 + 360.98564736629*(jd - J2000) + 0.000387933*(T*T) - (T*T*T)/38710000; // degrees
+    result = Maths.in2pi(Maths.degToRads((result)));
+    return result;
+  }
+
   /** 
    The Standard Time in the configured time zone, 
    for which the daily sidereal time is found for the configured position - {@value}. 
@@ -75,6 +81,26 @@ public final class SiderealTime {
   
   private Config config;
 
+  /** @param obliquity returns the obliquity in radians, for a given JD. */
+  private List<DailySiderealTime> everyDayOfTheYear(int year, DoubleUnaryOperator obliquity){
+    List<DailySiderealTime> result = new ArrayList<>();
+    LocalDateTime day = LocalDateTime.of(year, Month.JANUARY.getValue(), 1, CLOCK_TIME, 0);
+    while(day.getYear() == year) {
+      double lst = siderealTime(
+        day.getYear(), day.getMonthValue(), day.getDayOfMonth(), day.getHour(), 0, 0, 0, 
+        config.hoursOffsetFromUT(), config.minutesOffsetFromUT(), config.longitude()
+      );
+      double jd = GregorianCal.jdForGreenwich(day.getYear(), day.getMonthValue(), day.getDayOfMonth() + day.getHour()/24.0);
+      lst = lst + nutation(obliquity.applyAsDouble(jd), jd);
+      DailySiderealTime localSiderealTimeAt20h = new DailySiderealTime(lst, day.getMonthValue(), day.getDayOfMonth());
+      LogUtil.log("  Apparent sidereal time for "  + day + ", in the configured time zone: " + AstroUtil.radsToTimeString(localSiderealTimeAt20h.getRa()));
+      result.add(localSiderealTimeAt20h);
+      day = day.plusDays(1);
+    }
+    //Util.log("Sidereal time on Jan 01, at 20h (standard time in the configured time zone): " + AstroUtil.radsToTimeString(result.get(0).getRa()));
+    return result;
+  }
+
   /** Return rads. */
   private double obliquity(int year) {
     double jd = GregorianCal.jdForGreenwich(year, 7 , 1.0);
@@ -84,16 +110,12 @@ public final class SiderealTime {
   
   /** Returns radians, 0..2pi. */
   private double greenwichSideralTimeFromJd(double jd) {
-    //Meeus page 84
-    double T = julianCenturiesSinceJ2000(jd);
-    double result = 280.46061837 + 360.98564736629*(jd - J2000) + 0.000387933*(T*T) - (T*T*T)/38710000; // degrees
-    result = Maths.in2pi(Maths.degToRads((result)));
-    return result;
+    return greenwichMeanSiderealTime(jd);
   }
   
   /** Tiny correction for nutation, on the order of 1 second of time. */
   private double nutation(double obliquity, double jd) {
-    Nutation nutation = new Nutation(jd);
+    Nutation nutation = Nutation.at(jd);
     double Δψ = nutation.Δψ(); //rads
     double correction = Δψ * Math.cos(obliquity); //rads
     return correction;
@@ -108,5 +130,15 @@ public final class SiderealTime {
     
     rads = sidTime.siderealTime(2022, 1, 2, 0, 0, 0, 0, 0, 0, 0);
     LogUtil.log("Apparent LST at Greenwich 2022-01-02 0h: " + AstroUtil.radsToTimeString(rads));
+    
+    double jdStart = GregorianCal.jdForGreenwich(2025, 1, 1.0);
+    PrecessionCache precession = new PrecessionCache(jdStart - 1, jdStart + 366, PrecessionCache.DEFAULT_SPACING);
+    List<DailySiderealTime> direct = sidTime.everyDayOfTheYear(2025);
+    List<DailySiderealTime> cached = sidTime.everyDayOfTheYear(2025, precession);
+    double maxDiff = 0.0;
+    for(int i = 0; i < direct.size(); ++i) {
+      maxDiff = Math.max(maxDiff, Math.abs(direct.get(i).getRa() - cached.get(i).getRa()));
+    }
+    LogUtil.log("Max difference, obliquity for the year versus for each day from the cache: " + AstroUtil.radsToTimeString(maxDiff));
   }
 }
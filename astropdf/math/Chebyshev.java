@@ -0,0 +1,81 @@
+package astropdf.math;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.cos;
+
+import java.nio.DoubleBuffer;
+
+/**
+ Chebyshev polynomials, for approximating smooth functions on a short interval.
+
+ <P>The fit is made by interpolating at the Chebyshev nodes, which is very close to the best possible fit of a given degree.
+ The polynomial is evaluated using Clenshaw's recurrence.
+
+ <P>Ref: Numerical Recipes in C, 2nd edition, 1992, section 5.8.
+*/
+public final class Chebyshev {
+
+  /**
+   The nodes (the values of x in -1..+1) at which a function is sampled, for a fit of the given degree.
+   In ascending order.
+  */
+  public static double[] nodes(int degree) {
+    int n = degree + 1;
+    double[] result = new double[n];
+    for(int j = 0; j < n; ++j) {
+      result[j] = -cos(PI * (j + 0.5) / n);
+    }
+    return result;
+  }
+
+  /**
+   Return the coefficients c<sub>0</sub>..c<sub>n</sub> of a fit of degree n.
+   @param values the function's values at each of the {@link #nodes(int)}, in the same order.
+  */
+  public static double[] coefficients(double[] values) {
+    int n = values.length;
+    double[] result = new double[n];
+    for(int k = 0; k < n; ++k) {
+      double sum = 0.0;
+      for(int j = 0; j < n; ++j) {
+        //the nodes are in ascending order, so the sign alternates with k
+        sum = sum + values[j] * cos(PI * k * (n - j - 0.5) / n);
+      }
+      result[k] = 2.0 * sum / n;
+    }
+    result[0] = result[0] / 2.0;
+    return result;
+  }
+
+  /**
+   Evaluate a Chebyshev series, using Clenshaw's recurrence.
+   @param coefficients the array holding the coefficients.
+   @param offset the index of c<sub>0</sub> in the array.
+   @param degree the degree of the series.
+   @param x in the range -1..+1.
+  */
+  public static double value(double[] coefficients, int offset, int degree, double x) {
+    double twoX = 2.0 * x;
+    double b1 = 0.0;
+    double b2 = 0.0;
+    for(int k = degree; k >= 1; --k) {
+      double temp = b1;
+      b1 = twoX * b1 - b2 + coefficients[offset + k];
+      b2 = temp;
+    }
+    return coefficients[offset] + x * b1 - b2;
+  }
+
+  /** As in {@link #value(double[], int, int, double)}, but for coefficients held in a buffer, which may be memory-mapped. */
+  public static double value(DoubleBuffer coefficients, int offset, int degree, double x) {
+    double twoX = 2.0 * x;
+    double b1 = 0.0;
+    double b2 = 0.0;
+    for(int k = degree; k >= 1; --k) {
+      double temp = b1;
+      b1 = twoX * b1 - b2 + coefficients.get(offset + k);
+      b2 = temp;
+    }
+    return coefficients.get(offset) + x * b1 - b2;
+  }
+}
@@ -0,0 +1,158 @@
+package astropdf.math;
+
+import java.nio.DoubleBuffer;
+import java.util.function.Function;
+
+/**
+ Piecewise Chebyshev approximation of one or more coordinates, over a span of time.
+
+ <P>The span is divided into segments of equal length.
+ In each segment, each coordinate has its own Chebyshev series, all of the same degree.
+ A lookup finds the segment directly from the time, and then evaluates a single series.
+
+ <P>Coordinates that are angles are unwrapped in each segment before fitting, so that the
+ jump from 2pi to 0 doesn't spoil the fit. The value returned for an angle is not placed in any particular range.
+*/
+public final class ChebyshevTable {
+
+  /**
+   Fit the given function over the span start..end.
+   The span is extended at the end, if needed, to hold a whole number of segments.
+   @param f returns all coordinates for the given time.
+   @param isAngle for each coordinate, true only if it's an angle in radians.
+   @param interval the length of each segment.
+   @param degree the degree of each series.
+  */
+  public static ChebyshevTable fit(Function<Double, double[]> f, boolean[] isAngle, double start, double end, double interval, int degree) {
+    if (end <= start || interval <= 0 || degree < 1) {
+      throw new IllegalArgumentException("Bad span, interval, or degree: " + start + ".." + end + " " + interval + " " + degree);
+    }
+    int numCoords = isAngle.length;
+    int numSegments = (int)Math.ceil((end - start) / interval);
+    int n = degree + 1;
+    double[] coefficients = new double[numSegments * numCoords * n];
+    double[] nodes = Chebyshev.nodes(degree);
+    double[][] values = new double[numCoords][n];
+    for(int segment = 0; segment < numSegments; ++segment) {
+      double segmentStart = start + segment * interval;
+      for(int j = 0; j < n; ++j) {
+        double t = segmentStart + (nodes[j] + 1.0) * interval / 2.0;
+        double[] coords = f.apply(t);
+        for(int coord = 0; coord < numCoords; ++coord) {
+          values[coord][j] = coords[coord];
+        }
+      }
+      for(int coord = 0; coord < numCoords; ++coord) {
+        if (isAngle[coord]) {
+          unwrap(values[coord]);
+        }
+        double[] c = Chebyshev.coefficients(values[coord]);
+        System.arraycopy(c, 0, coefficients, (segment * numCoords + coord) * n, n);
+      }
+    }
+    return new ChebyshevTable(start, interval, degree, numCoords, numSegments, DoubleBuffer.wrap(coefficients));
+  }
+
+  /**
+   Constructor, for data that has already been fitted.
+   The buffer is used as is, and is not copied; it can be memory-mapped (see {@link ChebyshevTableFile}).
+   @param coefficients for each segment, for each coordinate, the coefficients c<sub>0</sub>..c<sub>degree</sub>.
+  */
+  public ChebyshevTable(double start, double interval, int degree, int numCoords, int numSegments, DoubleBuffer coefficients) {
+    if (coefficients.capacity() != numSegments * numCoords * (degree + 1)) {
+      throw new IllegalArgumentException("Number of coefficients doesn't match the shape of the table: " + coefficients.capacity());
+    }
+    this.start = start;
+    this.interval = interval;
+    this.degree = degree;
+    this.numCoords = numCoords;
+    this.numSegments = numSegments;
+    this.coefficients = coefficients;
+  }
+
+  /** The value of the given coordinate at the given time. */
+  public double value(int coord, double t) {
+    double segment = (t - start) / interval;
+    int idx = (int)Math.floor(segment);
+    if (idx == numSegments && t == end()) {
+      idx = numSegments - 1; //the very end of the span
+    }
+    if (idx < 0 || idx >= numSegments) {
+      throw new IllegalArgumentException("Time is outside of the span of the table: " + t + ", span: " + start + ".." + end());
+    }
+    double x = 2.0 * (segment - idx) - 1.0; // -1..+1
+    return Chebyshev.value(coefficients, (idx * numCoords + coord) * (degree + 1), degree, x);
+  }
+
+  /** Return true only if the given time is in the span of this table. */
+  public boolean covers(double t) {
+    return start <= t && t <= end();
+  }
+
+  /**
+   A bound on the difference between this table and the given one, over the whole span, for each coordinate.
+   The other table must have the same segments, and a degree at least as high as this one.
+   Since |T<sub>j</sub>(x)| &le; 1, the bound for each segment is the sum of the absolute differences of the coefficients,
+   with the missing coefficients of this table taken as 0. The largest over all segments is returned.
+  */
+  public double[] differenceBound(ChebyshevTable other) {
+    if (other.start != start || other.interval != interval || other.numSegments != numSegments || other.numCoords != numCoords || other.degree < degree) {
+      throw new IllegalArgumentException("Tables don't have the same segments, or the other table has a lower degree.");
+    }
+    double[] result = new double[numCoords];
+    for(int segment = 0; segment < numSegments; ++segment) {
+      for(int coord = 0; coord < numCoords; ++coord) {
+        int at = (segment * numCoords + coord) * (degree + 1);
+        int otherAt = (segment * numCoords + coord) * (other.degree + 1);
+        double sum = 0.0;
+        for(int j = 0; j <= other.degree; ++j) {
+          double c = j <= degree ? coefficients.get(at + j) : 0.0;
+          sum = sum + Math.abs(c - other.coefficients.get(otherAt + j));
+        }
+        result[coord] = Math.max(result[coord], sum);
+      }
+    }
+    return result;
+  }
+
+  /** The largest absolute value of the last coefficient of any series, for each coordinate. A measure of the error of the fit itself. */
+  public double[] lastCoefficient() {
+    double[] result = new double[numCoords];
+    for(int segment = 0; segment < numSegments; ++segment) {
+      for(int coord = 0; coord < numCoords; ++coord) {
+        int at = (segment * numCoords + coord) * (degree + 1);
+        result[coord] = Math.max(result[coord], Math.abs(coefficients.get(at + degree)));
+      }
+    }
+    return result;
+  }
+
+  public double start() { return start; }
+  public double end() { return start + numSegments * interval; }
+  public double interval() { return interval; }
+  public int degree() { return degree; }
+  public int numCoords() { return numCoords; }
+  public int numSegments() { return numSegments; }
+
+  // PRIVATE
+
+  private double start;
+  private double interval;
+  private int degree;
+  private int numCoords;
+  private int numSegments;
+  private DoubleBuffer coefficients;
+  
+  /** All of the coefficients, in storage order. Read-only. */
+  DoubleBuffer coefficients() {
+    return coefficients.asReadOnlyBuffer();
+  }
+
+  /** Remove jumps of 2pi between neighbouring values. */
+  private static void unwrap(double[] values) {
+    for(int j = 1; j < values.length; ++j) {
+      double diff = values[j] - values[j - 1];
+      values[j] = values[j] - Maths.TWO_PI * Math.round(diff / Maths.TWO_PI);
+    }
+  }
+}
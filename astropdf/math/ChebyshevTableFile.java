@@ -0,0 +1,137 @@
+package astropdf.math;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ Binary file holding one or more named {@link ChebyshevTable}s, meant to be memory-mapped.
+
+ <P>The file is similar in spirit to the SPK/DE files from JPL.
+ It's meant to be generated once, offline, and then mapped by every run that needs it.
+ Reading the file involves no parsing, and no copying of the coefficients onto the heap: each table
+ reads its coefficients directly from the mapped file.
+
+ <P>All numbers are little-endian. The layout is:
+<pre>
+ header (16 bytes)
+   int    magic number 'CHEB'
+   int    version
+   int    number of tables N
+   int    (unused)
+ segment index (N x 64 bytes)
+   byte[16] name of the table (ASCII, padded with zeros)
+   double start
+   double length of each segment
+   int    degree
+   int    number of coordinates
+   int    number of segments
+   int    (unused)
+   long   byte offset of the first coefficient, from the start of the file
+   long   (unused)
+ coefficients (8-byte doubles)
+   for each table: for each segment, for each coordinate, c0..c_degree
+</pre>
+*/
+public final class ChebyshevTableFile {
+
+  /** Write the given tables to a file, replacing any existing file. */
+  public static void save(Map<String, ChebyshevTable> tables, Path path) throws IOException {
+    long offset = HEADER_BYTES + tables.size() * INDEX_BYTES;
+    ByteBuffer index = ByteBuffer.allocate((int)offset).order(ByteOrder.LITTLE_ENDIAN);
+    index.putInt(MAGIC).putInt(VERSION).putInt(tables.size()).putInt(0);
+    for(String name : tables.keySet()) {
+      ChebyshevTable table = tables.get(name);
+      index.put(nameBytes(name));
+      index.putDouble(table.start()).putDouble(table.interval());
+      index.putInt(table.degree()).putInt(table.numCoords()).putInt(table.numSegments()).putInt(0);
+      index.putLong(offset).putLong(0L);
+      offset = offset + table.coefficients().capacity() * Double.BYTES;
+    }
+    index.flip();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+      write(index, channel);
+      for(ChebyshevTable table : tables.values()) {
+        DoubleBuffer coefficients = table.coefficients();
+        ByteBuffer bytes = ByteBuffer.allocate(coefficients.capacity() * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asDoubleBuffer().put(coefficients);
+        write(bytes, channel);
+      }
+    }
+  }
+
+  /**
+   Map the given file into memory, and return its tables, keyed by name, in the same order as in the file.
+   The mapping remains valid after this method returns, even though the file is closed.
+  */
+  public static Map<String, ChebyshevTable> map(Path path) throws IOException {
+    Map<String, ChebyshevTable> result = new LinkedHashMap<>();
+    MappedByteBuffer mapped = null;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    ByteBuffer file = mapped.order(ByteOrder.LITTLE_ENDIAN);
+    if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION) {
+      throw new IOException("Not a Chebyshev table file, or unknown version: " + path);
+    }
+    int numTables = file.getInt(8);
+    for(int i = 0; i < numTables; ++i) {
+      int at = HEADER_BYTES + i * INDEX_BYTES;
+      String name = nameFrom(file, at);
+      double start = file.getDouble(at + 16);
+      double interval = file.getDouble(at + 24);
+      int degree = file.getInt(at + 32);
+      int numCoords = file.getInt(at + 36);
+      int numSegments = file.getInt(at + 40);
+      long offset = file.getLong(at + 48);
+      int numBytes = numSegments * numCoords * (degree + 1) * Double.BYTES;
+      //slice() resets the byte order, so it must be set again
+      ByteBuffer bytes = file.duplicate().position((int)offset).limit((int)offset + numBytes).slice().order(ByteOrder.LITTLE_ENDIAN);
+      result.put(name, new ChebyshevTable(start, interval, degree, numCoords, numSegments, bytes.asDoubleBuffer()));
+    }
+    return result;
+  }
+
+  // PRIVATE
+
+  /** 'CHEB' in ASCII. */
+  private static final int MAGIC = 0x43484542;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+  private static final int INDEX_BYTES = 64;
+  private static final int NAME_BYTES = 16;
+
+  private static byte[] nameBytes(String name) {
+    byte[] ascii = name.getBytes(StandardCharsets.US_ASCII);
+    if (ascii.length > NAME_BYTES) {
+      throw new IllegalArgumentException("Table name is too long (max " + NAME_BYTES + " chars): " + name);
+    }
+    byte[] result = new byte[NAME_BYTES];
+    System.arraycopy(ascii, 0, result, 0, ascii.length);
+    return result;
+  }
+
+  private static String nameFrom(ByteBuffer file, int at) {
+    byte[] bytes = new byte[NAME_BYTES];
+    file.get(at, bytes);
+    int length = 0;
+    while (length < NAME_BYTES && bytes[length] != 0) {
+      ++length;
+    }
+    return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+  }
+
+  private static void write(ByteBuffer bytes, FileChannel channel) throws IOException {
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+}
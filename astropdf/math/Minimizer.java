@@ -0,0 +1,103 @@
+package astropdf.math;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ Find the minimum of a function of one variable, in a given interval.
+
+ <P>Uses Brent's method: parabolic interpolation through the 3 best points found so far,
+ falling back to a golden-section step whenever the parabola isn't helpful.
+ The function is assumed to have a single minimum in the interval; otherwise, a local minimum is returned.
+
+ <P>Ref: Brent, <em>Algorithms for Minimization without Derivatives</em>, 1973, chapter 5.
+*/
+public final class Minimizer {
+
+  /**
+   Return the x at which the function is smallest, in the interval a..b.
+   @param tolerance the desired accuracy of the result, in the same units as x.
+  */
+  public static double brent(DoubleUnaryOperator f, double a, double b, double tolerance) {
+    if (b < a) {
+      throw new IllegalArgumentException("Start of the interval is after its end: " + a + " " + b);
+    }
+    double x = a + GOLDEN * (b - a);
+    double w = x;
+    double v = x;
+    double fx = f.applyAsDouble(x);
+    double fw = fx;
+    double fv = fx;
+    double d = 0.0;
+    double e = 0.0; //the distance moved on the step before last
+    for(int iter = 0; iter < MAX_ITERATIONS; ++iter) {
+      double middle = (a + b) / 2.0;
+      double tol1 = SQRT_EPSILON * Math.abs(x) + tolerance / 3.0;
+      double tol2 = 2.0 * tol1;
+      if (Math.abs(x - middle) <= tol2 - (b - a) / 2.0) {
+        break; //done
+      }
+      boolean golden = true;
+      if (Math.abs(e) > tol1) {
+        //try a parabola through x, w, v
+        double r = (x - w) * (fx - fv);
+        double q = (x - v) * (fx - fw);
+        double p = (x - v) * q - (x - w) * r;
+        q = 2.0 * (q - r);
+        if (q > 0.0) {
+          p = -p;
+        }
+        q = Math.abs(q);
+        double eBefore = e;
+        e = d;
+        if (Math.abs(p) < Math.abs(0.5 * q * eBefore) && p > q * (a - x) && p < q * (b - x)) {
+          d = p / q;
+          double u = x + d;
+          if (u - a < tol2 || b - u < tol2) {
+            d = x < middle ? tol1 : -tol1; //don't evaluate too close to the ends
+          }
+          golden = false;
+        }
+      }
+      if (golden) {
+        e = (x < middle) ? b - x : a - x;
+        d = GOLDEN * e;
+      }
+      double u = Math.abs(d) >= tol1 ? x + d : x + (d > 0 ? tol1 : -tol1);
+      double fu = f.applyAsDouble(u);
+      if (fu <= fx) {
+        if (u < x) {
+          b = x;
+        }
+        else {
+          a = x;
+        }
+        v = w; fv = fw;
+        w = x; fw = fx;
+        x = u; fx = fu;
+      }
+      else {
+        if (u < x) {
+          a = u;
+        }
+        else {
+          b = u;
+        }
+        if (fu <= fw || w == x) {
+          v = w; fv = fw;
+          w = u; fw = fu;
+        }
+        else if (fu <= fv || v == x || v == w) {
+          v = u; fv = fu;
+        }
+      }
+    }
+    return x;
+  }
+
+  // PRIVATE
+
+  /** (3 - sqrt(5)) / 2, the golden section. */
+  private static final double GOLDEN = 0.3819660112501051;
+  private static final double SQRT_EPSILON = Math.sqrt(Math.ulp(1.0));
+  private static final int MAX_ITERATIONS = 200;
+}
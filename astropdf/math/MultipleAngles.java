@@ -0,0 +1,29 @@
+package astropdf.math;
+
+/**
+ The sines and cosines of the multiples kx of an angle x, for k = -n..+n.
+ 
+ <P>Only one call to <code>sin</code> and one to <code>cos</code> are made. 
+ The other values come from the formulas for sin(a + b) and cos(a + b).
+ This is useful for series whose arguments are small integer multiples of a few angles.
+*/
+public final class MultipleAngles {
+
+  /**
+   Fill the given tables for the angle x. 
+   The tables have length 2n + 1, and the item for the multiple k is at index n + k.
+  */
+  public static void fill(double x, double[] sin, double[] cos) {
+    int n = (sin.length - 1) / 2;
+    double s = Math.sin(x);
+    double c = Math.cos(x);
+    sin[n] = 0.0;
+    cos[n] = 1.0;
+    for(int k = 1; k <= n; ++k) {
+      sin[n + k] = sin[n + k - 1] * c + cos[n + k - 1] * s;
+      cos[n + k] = cos[n + k - 1] * c - sin[n + k - 1] * s;
+      sin[n - k] = -sin[n + k];
+      cos[n - k] = cos[n + k];
+    }
+  }
+}
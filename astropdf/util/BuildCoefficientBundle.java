@@ -0,0 +1,36 @@
+package astropdf.util;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import astropdf.astro.moon.LunarPositionDataLoader;
+import astropdf.astro.planets.PlanetPositionDataLoader;
+import astropdf.astro.precession.NutationDataLoader;
+import astropdf.astro.precession.PrecessionDataLoader;
+
+/**
+ Parse the text data files for VSOP87D, ELP 2000-82, precession, and nutation, and save them all in a single {@link CoefficientBundle}.
+ This is meant to be run at build time, and again whenever any of the text data files changes.
+ 
+ <P>Argument: the name of the file to write. 
+ The file must then be placed in the same directory as {@link CoefficientBundle}, with the name {@value CoefficientBundle#RESOURCE}.
+ For example: <code>astropdf/util/coefficients.bin</code>.
+*/
+public final class BuildCoefficientBundle {
+
+  public static void main(String... args) throws Exception {
+    if (args.length != 1) {
+      throw new IllegalArgumentException("Expecting 1 argument: file name.");
+    }
+    Path path = Paths.get(args[0]);
+    Map<String, double[][]> sections = new LinkedHashMap<>();
+    sections.putAll(PlanetPositionDataLoader.bundleSections());
+    sections.putAll(LunarPositionDataLoader.bundleSections());
+    sections.putAll(PrecessionDataLoader.bundleSections());
+    sections.putAll(NutationDataLoader.bundleSections());
+    CoefficientBundle.save(sections, path);
+    LogUtil.log("Saved " + sections.size() + " sections to " + path.toAbsolutePath());
+  }
+}
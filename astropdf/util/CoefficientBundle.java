@@ -0,0 +1,226 @@
+package astropdf.util;
+
+import static astropdf.util.LogUtil.log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ A packed binary resource holding the coefficients of the theories used by this project (VSOP87D, ELP 2000-82, precession, and nutation).
+
+ <P>Parsing the text data files is slow, and matters when many short-lived JVMs are started.
+ The text files can be converted once into this bundle, at build time.
+ The loaders read the bundle directly through a <code>ByteBuffer</code>, and parse the text files only if the bundle is absent.
+
+ <P>The bundle is a resource named {@value #RESOURCE}, in the same directory as this class.
+
+ <P>The bundle has named sections. Each section is a table of numbers, with a fixed number of columns.
+ All numbers are little-endian. The layout is:
+<pre>
+ header (16 bytes)
+   int    magic number 'COEF'
+   int    version
+   int    number of sections N
+   int    (unused)
+ section index (N x 48 bytes)
+   byte[32] name of the section (ASCII, padded with zeros)
+   int    number of rows
+   int    number of columns
+   long   byte offset of the first number, from the start of the bundle
+ data (8-byte doubles)
+   for each section: row after row
+</pre>
+*/
+public final class CoefficientBundle {
+
+  /** The name of the resource holding the bundle - {@value}. */
+  public static final String RESOURCE = "coefficients.bin";
+
+  /**
+   Return the bundle, if it exists.
+   The bundle is read only once per JVM, the first time this method is called.
+  */
+  public static Optional<CoefficientBundle> instance() {
+    return Holder.INSTANCE;
+  }
+
+  /** Return true only if the bundle has a section with the given name. */
+  public boolean has(String name) {
+    return sections.containsKey(name);
+  }
+
+  /** The data for the given section, row after row. Read-only. The position of the buffer is 0. */
+  public DoubleBuffer section(String name) {
+    Section section = sectionFor(name);
+    return section.data.duplicate();
+  }
+
+  /** The data for the given section, row after row, copied into a new array in a single bulk read. */
+  public double[] values(String name) {
+    DoubleBuffer data = section(name);
+    double[] result = new double[data.remaining()];
+    data.get(result);
+    return result;
+  }
+
+  /** The given rows, one after the other, in a single array. The same layout as a section of a bundle. */
+  public static double[] flatten(List<double[]> rows) {
+    int size = 0;
+    for(double[] row : rows) {
+      size = size + row.length;
+    }
+    double[] result = new double[size];
+    int at = 0;
+    for(double[] row : rows) {
+      System.arraycopy(row, 0, result, at, row.length);
+      at = at + row.length;
+    }
+    return result;
+  }
+
+  /** The number of columns in each row of the given section. */
+  public int columns(String name) {
+    return sectionFor(name).columns;
+  }
+
+  /**
+   Write a bundle to the file system.
+   @param sections the data for each section; each row must have the same number of columns.
+  */
+  public static void save(Map<String, double[][]> sections, Path path) throws IOException {
+    long offset = HEADER_BYTES + sections.size() * INDEX_BYTES;
+    ByteBuffer index = ByteBuffer.allocate((int)offset).order(ByteOrder.LITTLE_ENDIAN);
+    index.putInt(MAGIC).putInt(VERSION).putInt(sections.size()).putInt(0);
+    for(String name : sections.keySet()) {
+      double[][] rows = sections.get(name);
+      int columns = rows.length == 0 ? 0 : rows[0].length;
+      index.put(nameBytes(name)).putInt(rows.length).putInt(columns).putLong(offset);
+      offset = offset + rows.length * columns * Double.BYTES;
+    }
+    index.flip();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+      write(index, channel);
+      for(String name : sections.keySet()) {
+        double[][] rows = sections.get(name);
+        int columns = rows.length == 0 ? 0 : rows[0].length;
+        ByteBuffer bytes = ByteBuffer.allocate(rows.length * columns * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for(double[] row : rows) {
+          if (row.length != columns) {
+            throw new IllegalArgumentException("Rows in section " + name + " don't all have the same number of columns.");
+          }
+          for(double value : row) {
+            bytes.putDouble(value);
+          }
+        }
+        bytes.flip();
+        write(bytes, channel);
+      }
+    }
+  }
+
+  // PRIVATE
+
+  /** 'COEF' in ASCII. */
+  private static final int MAGIC = 0x434F4546;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+  private static final int INDEX_BYTES = 48;
+  private static final int NAME_BYTES = 32;
+
+  private static final class Section {
+    int columns;
+    DoubleBuffer data;
+  }
+
+  private Map<String, Section> sections = new LinkedHashMap<>();
+
+  /** Lazy, thread-safe loading. */
+  private static final class Holder {
+    static final Optional<CoefficientBundle> INSTANCE = read();
+  }
+
+  private CoefficientBundle(ByteBuffer bytes) throws IOException {
+    if (bytes.getInt(0) != MAGIC || bytes.getInt(4) != VERSION) {
+      throw new IOException("Not a coefficient bundle, or unknown version.");
+    }
+    int numSections = bytes.getInt(8);
+    for(int i = 0; i < numSections; ++i) {
+      int at = HEADER_BYTES + i * INDEX_BYTES;
+      String name = nameFrom(bytes, at);
+      int rows = bytes.getInt(at + NAME_BYTES);
+      Section section = new Section();
+      section.columns = bytes.getInt(at + NAME_BYTES + 4);
+      int offset = (int)bytes.getLong(at + NAME_BYTES + 8);
+      int numBytes = rows * section.columns * Double.BYTES;
+      //slice() resets the byte order, so it must be set again
+      ByteBuffer slice = bytes.duplicate().position(offset).limit(offset + numBytes).slice().order(ByteOrder.LITTLE_ENDIAN);
+      section.data = slice.asDoubleBuffer().asReadOnlyBuffer();
+      sections.put(name, section);
+    }
+  }
+
+  private static Optional<CoefficientBundle> read() {
+    Optional<CoefficientBundle> result = Optional.empty();
+    try (InputStream input = CoefficientBundle.class.getResourceAsStream(RESOURCE)){
+      if (input == null) {
+        log("No coefficient bundle found. The text data files will be parsed instead.");
+      }
+      else {
+        byte[] raw = input.readAllBytes();
+        ByteBuffer bytes = ByteBuffer.allocateDirect(raw.length).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.put(raw).flip();
+        result = Optional.of(new CoefficientBundle(bytes));
+        log("Using the coefficient bundle: " + raw.length + " bytes.");
+      }
+    }
+    catch(IOException ex) {
+      log("CANNOT READ COEFFICIENT BUNDLE: " + ex.getMessage() + ". The text data files will be parsed instead.");
+    }
+    return result;
+  }
+
+  private Section sectionFor(String name) {
+    Section result = sections.get(name);
+    if (result == null) {
+      throw new IllegalArgumentException("No section in the coefficient bundle named " + name);
+    }
+    return result;
+  }
+
+  private static byte[] nameBytes(String name) {
+    byte[] ascii = name.getBytes(StandardCharsets.US_ASCII);
+    if (ascii.length > NAME_BYTES) {
+      throw new IllegalArgumentException("Section name is too long (max " + NAME_BYTES + " chars): " + name);
+    }
+    byte[] result = new byte[NAME_BYTES];
+    System.arraycopy(ascii, 0, result, 0, ascii.length);
+    return result;
+  }
+
+  private static String nameFrom(ByteBuffer bytes, int at) {
+    byte[] name = new byte[NAME_BYTES];
+    bytes.get(at, name);
+    int length = 0;
+    while (length < NAME_BYTES && name[length] != 0) {
+      ++length;
+    }
+    return new String(name, 0, length, StandardCharsets.US_ASCII);
+  }
+
+  private static void write(ByteBuffer bytes, FileChannel channel) throws IOException {
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+}